@@ -0,0 +1,10 @@
+#!/bin/bash
+# Runs the JMH benchmarks and stores the results per version for later comparison:
+#   ./run-benchmarks.sh                      -> benchmark-results/<version>.json
+#   ./run-benchmarks.sh -p difficulty=1      -> extra arguments are passed to JMH
+#   java -jar target/benchmarks.jar compare benchmark-results/0.2.3.json benchmark-results/0.2.4.json
+VERSION=$(mvn -q help:evaluate -Dexpression=project.version -DforceStdout)
+mkdir -p benchmark-results
+mvn -Pbenchmark clean package -DskipTests
+
+java -jar target/benchmarks.jar -rf json -rff "benchmark-results/${VERSION}.json" "$@"
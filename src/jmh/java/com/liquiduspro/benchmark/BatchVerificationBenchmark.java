@@ -0,0 +1,54 @@
+package com.liquiduspro.benchmark;
+
+import com.liquiduspro.crypto.BatchSignatureVerifier;
+import com.liquiduspro.domain.Wallet;
+import com.liquiduspro.domain.transaction.Transaction;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures verifying the signatures of a block one by one against {@link BatchSignatureVerifier}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Benchmark)
+public class BatchVerificationBenchmark {
+    @Param({"16", "256"})
+    public int transactionCount;
+    private List<Transaction> transactions;
+
+    @Setup
+    public void setUp() {
+        Security.addProvider(new BouncyCastleProvider());
+        final Wallet sender = new Wallet();
+        final Wallet recipient = new Wallet();
+        transactions = new ArrayList<>(transactionCount);
+        for (int i = 0; i < transactionCount; i++) {
+            final Transaction transaction = new Transaction(sender.getPublicKey(), recipient.getPublicKey(), i + 1, List.of());
+            transaction.generateSignature(sender.getPrivateKey());
+            transactions.add(transaction);
+        }
+    }
+
+    @Benchmark
+    public boolean sequential() {
+        boolean valid = true;
+        for (Transaction transaction : transactions) {
+            valid &= transaction.verifySignature();
+        }
+        return valid;
+    }
+
+    @Benchmark
+    public boolean[] batch() {
+        return BatchSignatureVerifier.getInstance().verify(transactions);
+    }
+}
@@ -0,0 +1,98 @@
+package com.liquiduspro.benchmark;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Diffs two JMH JSON result files (e.g. of two releases) and reports every benchmark whose score
+ * got worse by more than the threshold. Throughput modes are better when higher, all others when lower.
+ *
+ * @author econlq
+ */
+public final class BenchmarkComparison {
+    private static final double DEFAULT_THRESHOLD_PERCENT = 10.0;
+
+    private BenchmarkComparison() {
+    }
+
+    /**
+     * @param args {@code <baseline.json> <current.json> [threshold %]}
+     * @return process exit code, 1 if a regression was found
+     */
+    public static int compare(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: compare <baseline.json> <current.json> [threshold %]");
+            return 2;
+        }
+        final double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+        final Map<String, JsonObject> baseline;
+        final Map<String, JsonObject> current;
+        try {
+            baseline = read(Path.of(args[0]));
+            current = read(Path.of(args[1]));
+        } catch (IOException e) {
+            System.err.println("Could not read results: " + e.getMessage());
+            return 2;
+        }
+
+        int regressions = 0;
+        System.out.printf("%-80s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, JsonObject> entry : current.entrySet()) {
+            final JsonObject before = baseline.get(entry.getKey());
+            final JsonObject metric = entry.getValue().getAsJsonObject("primaryMetric");
+            final double score = metric.get("score").getAsDouble();
+            final String unit = metric.get("scoreUnit").getAsString();
+            if (before == null) {
+                System.out.printf("%-80s %14s %14.3f %9s  %s%n", entry.getKey(), "-", score, "new", unit);
+                continue;
+            }
+            final double previous = before.getAsJsonObject("primaryMetric").get("score").getAsDouble();
+            final double change = previous == 0 ? 0 : (score - previous) / previous * 100;
+            final boolean higherIsBetter = entry.getValue().get("mode").getAsString().equals("thrpt");
+            final boolean regression = higherIsBetter ? change < -threshold : change > threshold;
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf("%-80s %14.3f %14.3f %+8.1f%%  %s%s%n",
+                    entry.getKey(), previous, score, change, unit, regression ? "  REGRESSION" : "");
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.printf("%-80s %14s %14s %9s%n", key, "", "-", "removed");
+            }
+        }
+        System.out.println(regressions + " regression(s) above " + threshold + "%");
+        return regressions > 0 ? 1 : 0;
+    }
+
+    // results keyed by benchmark name, parameters and mode
+    private static Map<String, JsonObject> read(Path path) throws IOException {
+        final Map<String, JsonObject> results = new LinkedHashMap<>();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            final JsonArray array = JsonParser.parseReader(reader).getAsJsonArray();
+            for (JsonElement element : array) {
+                final JsonObject result = element.getAsJsonObject();
+                final StringBuilder key = new StringBuilder(result.get("benchmark").getAsString());
+                if (result.has("params")) {
+                    final Map<String, String> params = new TreeMap<>();
+                    result.getAsJsonObject("params").entrySet()
+                            .forEach(param -> params.put(param.getKey(), param.getValue().getAsString()));
+                    key.append(params);
+                }
+                key.append(" (").append(result.get("mode").getAsString()).append(')');
+                results.put(key.toString(), result);
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,44 @@
+package com.liquiduspro.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+
+/**
+ * Entry point of {@code target/benchmarks.jar}.
+ * <ul>
+ *     <li>{@code java -jar benchmarks.jar [jmh options]} runs the benchmarks, results are written as JSON
+ *     to {@code jmh-result.json} unless {@code -rf}/{@code -rff} are given.</li>
+ *     <li>{@code java -jar benchmarks.jar compare <baseline.json> <current.json> [threshold %]}
+ *     diffs two result files, see {@link BenchmarkComparison}.</li>
+ * </ul>
+ *
+ * @author econlq
+ */
+public final class BenchmarkRunner {
+    private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        if (args.length > 0 && args[0].equals("compare")) {
+            System.exit(BenchmarkComparison.compare(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        final CommandLineOptions commandLine = new CommandLineOptions(args);
+        final ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result(DEFAULT_RESULT_FILE);
+        }
+        new Runner(options.build()).run();
+    }
+}
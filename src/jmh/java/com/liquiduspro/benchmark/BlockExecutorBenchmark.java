@@ -0,0 +1,77 @@
+package com.liquiduspro.benchmark;
+
+import com.liquiduspro.domain.Block;
+import com.liquiduspro.domain.Wallet;
+import com.liquiduspro.domain.transaction.Transaction;
+import com.liquiduspro.domain.transaction.TransactionOutput;
+import com.liquiduspro.singleton.UTXOSet;
+import com.liquiduspro.util.StringUtil;
+import com.liquiduspro.util.TransactionException;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures applying a block of independent payments one transaction at a time
+ * against {@link Block#addTransactions(List)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Thread)
+public class BlockExecutorBenchmark {
+    @Param({"64", "256"})
+    public int transactions;
+    private final List<Wallet> wallets = new ArrayList<>();
+    private List<Transaction> batch;
+    private Block block;
+
+    @Setup(Level.Trial)
+    public void setUpWallets() {
+        Security.addProvider(new BouncyCastleProvider());
+        for (int i = 0; i < transactions; i++) {
+            wallets.add(new Wallet());
+        }
+    }
+
+    // every wallet pays the next one from its only output
+    @Setup(Level.Invocation)
+    public void setUpBlock() throws TransactionException {
+        final UTXOSet utxoSet = UTXOSet.getInstance();
+        utxoSet.clear();
+        for (int i = 0; i < transactions; i++) {
+            final TransactionOutput output = new TransactionOutput(wallets.get(i).getPublicKey(), 10f, StringUtil.sha256("funding" + i));
+            utxoSet.add(output.getId(), output);
+        }
+        batch = new ArrayList<>(transactions);
+        for (int i = 0; i < transactions; i++) {
+            batch.add(wallets.get(i).sendFunds(wallets.get((i + 1) % transactions).getPublicKey(), 1f));
+        }
+        block = new Block(StringUtil.sha256("previous"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        UTXOSet.getInstance().clear();
+    }
+
+    @Benchmark
+    public Block addTransaction() {
+        for (Transaction transaction : batch) {
+            block.addTransaction(transaction);
+        }
+        return block;
+    }
+
+    @Benchmark
+    public Block addTransactions() {
+        block.addTransactions(batch);
+        return block;
+    }
+}
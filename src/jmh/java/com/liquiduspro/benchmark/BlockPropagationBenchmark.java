@@ -0,0 +1,159 @@
+package com.liquiduspro.benchmark;
+
+import com.liquiduspro.domain.Block;
+import com.liquiduspro.domain.BlockHeader;
+import com.liquiduspro.domain.Wallet;
+import com.liquiduspro.domain.transaction.Transaction;
+import com.liquiduspro.domain.transaction.TransactionOutput;
+import com.liquiduspro.network.MemoryNodeStore;
+import com.liquiduspro.network.NodeStore;
+import com.liquiduspro.network.PeerNode;
+import com.liquiduspro.singleton.UTXOSet;
+import com.liquiduspro.util.Hash;
+import com.liquiduspro.util.StringUtil;
+import com.liquiduspro.util.TransactionException;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures block propagation through a line of {@link PeerNode}s over loopback: the first node announces
+ * {@link #BLOCKS} new blocks, an operation ends when the last node has stored all of them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Benchmark)
+public class BlockPropagationBenchmark {
+    public static final int BLOCKS = 100;
+    @Param({"2", "4"})
+    public int nodes;
+    @Param({"0", "50"})
+    public int transactions;
+    private final List<PeerNode> peers = new ArrayList<>();
+    private MemoryNodeStore first;
+    private LastNodeStore last;
+    private List<Transaction> body;
+    private List<Block> blocks;
+    private Hash tip = Hash.ZERO;
+    private long timeStamp;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, TransactionException {
+        Security.addProvider(new BouncyCastleProvider());
+        final Wallet sender = new Wallet();
+        final TransactionOutput funding = new TransactionOutput(sender.getPublicKey(), 100f, StringUtil.sha256("funding"));
+        UTXOSet.getInstance().add(funding.getId(), funding);
+        final Transaction transaction = sender.sendFunds(new Wallet().getPublicKey(), 1f);
+        transaction.processTransaction();
+        UTXOSet.getInstance().clear();
+        body = Collections.nCopies(transactions, transaction);
+
+        final InetSocketAddress loopback = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        first = new MemoryNodeStore();
+        last = new LastNodeStore();
+        for (int i = 0; i < nodes; i++) {
+            final NodeStore store = i == 0 ? first : i == nodes - 1 ? last : new MemoryNodeStore();
+            final PeerNode node = new PeerNode(store, loopback);
+            if (i > 0) {
+                node.connect(peers.get(i - 1).getLocalAddress());
+            }
+            peers.add(node);
+        }
+    }
+
+    // new blocks on top of the first node's tip, the previous ones have reached every node
+    @Setup(Level.Invocation)
+    public void setUpBlocks() {
+        blocks = new ArrayList<>(BLOCKS);
+        for (int i = 0; i < BLOCKS; i++) {
+            final Block block = block(tip, timeStamp++);
+            first.addBlock(block);
+            blocks.add(block);
+            tip = block.getHash();
+        }
+        last.expect(tip);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        peers.forEach(PeerNode::close);
+        peers.clear();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCKS)
+    public void propagate() throws InterruptedException {
+        final PeerNode node = peers.get(0);
+        for (Block block : blocks) {
+            node.announceBlock(block.getHash());
+        }
+        if (!last.await()) {
+            throw new IllegalStateException("Blocks did not reach the last node");
+        }
+    }
+
+    private Block block(final Hash previousHash, final long timeStamp) {
+        final Block unsealed = new Block(previousHash, timeStamp, 0, null, null, body);
+        unsealed.prepareMining();
+        final Hash merkleRoot = unsealed.getMerkleRoot();
+        return new Block(previousHash, timeStamp, 0, merkleRoot,
+                BlockHeader.calculateHash(previousHash, timeStamp, 0, merkleRoot), body);
+    }
+
+    // store of the last node, signals when the expected block arrives
+    private static final class LastNodeStore implements NodeStore {
+        private final MemoryNodeStore blocks = new MemoryNodeStore();
+        private volatile Hash expected;
+        private volatile CountDownLatch arrived;
+
+        void expect(final Hash hash) {
+            arrived = new CountDownLatch(1);
+            expected = hash;
+        }
+
+        boolean await() throws InterruptedException {
+            return arrived.await(30, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public boolean containsBlock(final Hash hash) {
+            return blocks.containsBlock(hash);
+        }
+
+        @Override
+        public Block getBlock(final Hash hash) {
+            return blocks.getBlock(hash);
+        }
+
+        @Override
+        public Hash getTip() {
+            return blocks.getTip();
+        }
+
+        @Override
+        public boolean addBlock(final Block block) {
+            final boolean added = blocks.addBlock(block);
+            if (added && block.getHash().equals(expected)) {
+                arrived.countDown();
+            }
+            return added;
+        }
+
+        @Override
+        public boolean addTransaction(final Transaction transaction) {
+            return blocks.addTransaction(transaction);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.liquiduspro.benchmark;
+
+import com.liquiduspro.domain.Block;
+import com.liquiduspro.domain.transaction.Transaction;
+import com.liquiduspro.singleton.Blockchain;
+import com.liquiduspro.storage.InMemoryBlockStore;
+import com.liquiduspro.util.Hash;
+import com.liquiduspro.util.StringUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures finding a block by hash and a transaction by id through the {@link Blockchain} indexes,
+ * against a linear scan of {@link Blockchain#getChain()}.
+ * The blocks go to a {@link Blockchain} over its own {@link InMemoryBlockStore}, the shared chain is left untouched.
+ * Blocks are linked but not mined, only their hashes and transaction ids matter here.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Benchmark)
+public class ChainIndexBenchmark {
+    private static final int TRANSACTIONS_PER_BLOCK = 10;
+    @Param({"100", "1000"})
+    public int blocks;
+    private Blockchain blockchain;
+    private Hash[] blockHashes;
+    private Hash[] transactionIds;
+
+    @Setup
+    public void setUp() {
+        blockchain = new Blockchain(new InMemoryBlockStore());
+        blockHashes = new Hash[blocks];
+        transactionIds = new Hash[blocks * TRANSACTIONS_PER_BLOCK];
+        Hash previousHash = Hash.ZERO;
+        for (int height = 0; height < blocks; height++) {
+            final Block block = new Block(previousHash);
+            for (int i = 0; i < TRANSACTIONS_PER_BLOCK; i++) {
+                final Transaction transaction = new Transaction(null, null, i, List.of());
+                transaction.setTransactionId(StringUtil.sha256("tx" + height + "/" + i));
+                block.getTransactions().add(transaction);
+                transactionIds[height * TRANSACTIONS_PER_BLOCK + i] = transaction.getTransactionId();
+            }
+            blockchain.addBlock(block);
+            blockHashes[height] = block.getHash();
+            previousHash = block.getHash();
+        }
+    }
+
+    @Benchmark
+    public int blockHeightByIndex() {
+        return blockchain.getHeight(blockHashes[ThreadLocalRandom.current().nextInt(blocks)]);
+    }
+
+    @Benchmark
+    public int blockHeightByScan() {
+        final Hash hash = blockHashes[ThreadLocalRandom.current().nextInt(blocks)];
+        final List<Block> chain = blockchain.getChain();
+        for (int height = 0; height < chain.size(); height++) {
+            if (chain.get(height).getHash().equals(hash)) return height;
+        }
+        return -1;
+    }
+
+    @Benchmark
+    public Blockchain.TransactionLocation transactionByIndex() {
+        return blockchain.findTransaction(transactionIds[ThreadLocalRandom.current().nextInt(transactionIds.length)]);
+    }
+
+    @Benchmark
+    public Blockchain.TransactionLocation transactionByScan() {
+        final Hash id = transactionIds[ThreadLocalRandom.current().nextInt(transactionIds.length)];
+        final List<Block> chain = blockchain.getChain();
+        for (int height = 0; height < chain.size(); height++) {
+            final List<Transaction> transactions = chain.get(height).getTransactions();
+            for (int position = 0; position < transactions.size(); position++) {
+                if (transactions.get(position).getTransactionId().equals(id)) {
+                    return new Blockchain.TransactionLocation(height, position);
+                }
+            }
+        }
+        return null;
+    }
+}
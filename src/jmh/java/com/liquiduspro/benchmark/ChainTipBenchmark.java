@@ -0,0 +1,76 @@
+package com.liquiduspro.benchmark;
+
+import com.liquiduspro.domain.Block;
+import com.liquiduspro.singleton.Blockchain;
+import com.liquiduspro.util.Hash;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures polling the tip of the {@link Blockchain}, as miners and validators do, with and without a background
+ * thread that keeps appending blocks. The writer starts over on an empty chain every {@link #BLOCKS} blocks.
+ * Blocks are linked but not mined.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Benchmark)
+public class ChainTipBenchmark {
+    public static final int BLOCKS = 10_000;
+    @Param({"false", "true"})
+    public boolean writing;
+    private Blockchain blockchain;
+    private volatile boolean stopped;
+    private Thread writer;
+
+    @Setup
+    public void setUp() {
+        blockchain = Blockchain.getInstance();
+        blockchain.close();
+        final List<Block> blocks = new ArrayList<>(BLOCKS);
+        Hash previousHash = Hash.ZERO;
+        for (int i = 0; i < BLOCKS; i++) {
+            final Block block = new Block(previousHash);
+            blocks.add(block);
+            previousHash = block.getHash();
+        }
+        blocks.forEach(blockchain::addBlock);
+        if (!writing) return;
+        stopped = false;
+        writer = new Thread(() -> {
+            while (!stopped) {
+                blockchain.close();
+                for (int i = 0; i < BLOCKS && !stopped; i++) {
+                    blockchain.addBlock(blocks.get(i));
+                }
+            }
+        }, "chain-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        stopped = true;
+        if (writer != null) {
+            writer.join();
+            writer = null;
+        }
+        blockchain.close();
+    }
+
+    @Benchmark
+    public Hash latestBlockHash() {
+        return blockchain.getLatestBlockHash();
+    }
+
+    @Benchmark
+    public int size() {
+        return blockchain.size();
+    }
+}
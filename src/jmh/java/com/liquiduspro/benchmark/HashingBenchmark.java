@@ -0,0 +1,38 @@
+package com.liquiduspro.benchmark;
+
+import com.liquiduspro.util.Hash;
+import com.liquiduspro.util.StringUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link StringUtil#applySha256(String)} (hex) and {@link StringUtil#sha256(String)} (binary {@link Hash})
+ * for header-sized and larger inputs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Thread)
+public class HashingBenchmark {
+    @Param({"64", "141", "1024"})
+    public int length;
+    private String input;
+
+    @Setup
+    public void setUp() {
+        input = "a".repeat(length);
+    }
+
+    @Benchmark
+    public String applySha256() {
+        return StringUtil.applySha256(input);
+    }
+
+    @Benchmark
+    public Hash sha256() {
+        return StringUtil.sha256(input);
+    }
+}
@@ -0,0 +1,54 @@
+package com.liquiduspro.benchmark;
+
+import com.liquiduspro.crypto.KeyHandle;
+import com.liquiduspro.crypto.KeyRegistry;
+import com.liquiduspro.domain.Wallet;
+import com.liquiduspro.domain.transaction.TransactionOutput;
+import com.liquiduspro.util.StringUtil;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.Security;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding a public key on every use against looking up its interned {@link KeyHandle}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Thread)
+public class KeyRegistryBenchmark {
+    private Wallet wallet;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() {
+        Security.addProvider(new BouncyCastleProvider());
+        wallet = new Wallet();
+        encoded = wallet.getPublicKey().getEncoded();
+    }
+
+    @Benchmark
+    public String getStringFromKey() {
+        return StringUtil.getStringFromKey(wallet.getPublicKey());
+    }
+
+    @Benchmark
+    public String internKey() {
+        return KeyRegistry.getInstance().intern(wallet.getPublicKey()).getEncodedString();
+    }
+
+    // a known key read back from a block store
+    @Benchmark
+    public KeyHandle internEncoded() {
+        return KeyRegistry.getInstance().intern(encoded);
+    }
+
+    @Benchmark
+    public TransactionOutput createOutput() {
+        return new TransactionOutput(wallet.getPublicKey(), 1f, null);
+    }
+}
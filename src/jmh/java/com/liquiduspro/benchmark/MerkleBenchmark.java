@@ -0,0 +1,67 @@
+package com.liquiduspro.benchmark;
+
+import com.liquiduspro.domain.MerkleProof;
+import com.liquiduspro.domain.MerkleTree;
+import com.liquiduspro.domain.transaction.Transaction;
+import com.liquiduspro.util.Hash;
+import com.liquiduspro.util.StringUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link StringUtil#getMerkleRoot(List)} (a full build, parallel from
+ * {@link MerkleTree#PARALLEL_THRESHOLD} transactions), appending one transaction to a built tree,
+ * and creating and verifying an inclusion proof, for growing block sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Thread)
+public class MerkleBenchmark {
+    @Param({"1", "16", "256", "4096"})
+    public int transactionCount;
+    private List<Transaction> transactions;
+    private MerkleTree tree;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        transactions = new ArrayList<>(transactionCount);
+        for (int i = 0; i < transactionCount; i++) {
+            // only the id takes part in the merkle root
+            final Transaction transaction = new Transaction(null, null, i, List.of());
+            transaction.setTransactionId(StringUtil.sha256("tx" + i));
+            transactions.add(transaction);
+        }
+    }
+
+    // a fresh tree per iteration, so appends do not keep growing it
+    @Setup(Level.Iteration)
+    public void buildTree() {
+        tree = MerkleTree.build(transactions);
+        next = 0;
+    }
+
+    @Benchmark
+    public Hash getMerkleRoot() {
+        return StringUtil.getMerkleRoot(transactions);
+    }
+
+    @Benchmark
+    public Hash appendTransaction() {
+        tree.append(transactions.get(next++ % transactionCount).getTransactionId());
+        return tree.getRoot();
+    }
+
+    @Benchmark
+    public boolean proveAndVerify() {
+        final int index = next++ % transactionCount;
+        final MerkleProof proof = tree.proof(index);
+        return MerkleTree.verify(transactions.get(index).getTransactionId(), proof, tree.getRoot());
+    }
+}
@@ -0,0 +1,31 @@
+package com.liquiduspro.benchmark;
+
+import com.liquiduspro.domain.Block;
+import com.liquiduspro.util.Hash;
+import com.liquiduspro.util.StringUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Block#mineBlock(int)} on an empty block at low difficulties.
+ * A new block (new timestamp) is mined per invocation, so the score is an average over many nonce searches.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Thread)
+public class MiningBenchmark {
+    @Param({"1", "2", "3", "4"})
+    public int difficulty;
+    private final Hash previousHash = StringUtil.sha256("previous");
+
+    @Benchmark
+    public Block mineBlock() {
+        final Block block = new Block(previousHash);
+        block.mineBlock(difficulty);
+        return block;
+    }
+}
@@ -0,0 +1,51 @@
+package com.liquiduspro.benchmark;
+
+import com.liquiduspro.domain.transaction.TransactionOutput;
+import com.liquiduspro.util.ErrorMessage;
+import com.liquiduspro.util.Hash;
+import com.liquiduspro.util.TransactionException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Baseline for {@link UTXOSetContentionBenchmark}: the former {@link com.liquiduspro.singleton.UTXOSet}
+ * with one {@link ReentrantReadWriteLock} around a {@link HashMap}. It has no owner index,
+ * so writes do less work than in the striped set, reads are equivalent.
+ */
+final class ReadWriteLockUTXOSet {
+    private final Map<Hash, TransactionOutput> UTXOs = new HashMap<>();
+    private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+
+    void add(Hash id, TransactionOutput transactionOutput) {
+        readWriteLock.writeLock().lock();
+        try {
+            UTXOs.put(id, transactionOutput);
+        } finally {
+            readWriteLock.writeLock().unlock();
+        }
+    }
+
+    TransactionOutput get(Hash id) throws TransactionException {
+        readWriteLock.readLock().lock();
+        try {
+            if (!UTXOs.containsKey(id)) {
+                throw new TransactionException(ErrorMessage.UTXO_NOT_FOUND);
+            }
+            return UTXOs.get(id);
+        } finally {
+            readWriteLock.readLock().unlock();
+        }
+    }
+
+    TransactionOutput remove(Hash id) {
+        readWriteLock.writeLock().lock();
+        try {
+            return UTXOs.remove(id);
+        } finally {
+            readWriteLock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.liquiduspro.benchmark;
+
+import com.liquiduspro.domain.Wallet;
+import com.liquiduspro.util.StringUtil;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.Security;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures ECDSA signing and verification of transaction data.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Thread)
+public class SignatureBenchmark {
+    private Wallet wallet;
+    private String data;
+    private byte[] signature;
+
+    @Setup
+    public void setUp() {
+        Security.addProvider(new BouncyCastleProvider());
+        wallet = new Wallet();
+        // same shape as Transaction#generateSignature: sender + recipient + value
+        data = StringUtil.getStringFromKey(wallet.getPublicKey()) + StringUtil.getStringFromKey(new Wallet().getPublicKey()) + 42.5f;
+        signature = StringUtil.applyECDSASignature(wallet.getPrivateKey(), data);
+    }
+
+    @Benchmark
+    public byte[] applyECDSASignature() {
+        return StringUtil.applyECDSASignature(wallet.getPrivateKey(), data);
+    }
+
+    @Benchmark
+    public boolean verifyECDSASignature() {
+        return StringUtil.verifyECDSASignature(wallet.getPublicKey(), data, signature);
+    }
+}
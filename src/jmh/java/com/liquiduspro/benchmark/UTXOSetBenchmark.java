@@ -0,0 +1,68 @@
+package com.liquiduspro.benchmark;
+
+import com.liquiduspro.domain.Wallet;
+import com.liquiduspro.domain.transaction.TransactionOutput;
+import com.liquiduspro.singleton.UTXOSet;
+import com.liquiduspro.util.Hash;
+import com.liquiduspro.util.StringUtil;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.Security;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link UTXOSet} get/add/remove with readers and writers hitting the set at the same time.
+ * Readers only look up outputs that are never removed, writers add and remove their own outputs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Benchmark)
+public class UTXOSetBenchmark {
+    @Param({"10000"})
+    public int size;
+    private UTXOSet utxoSet;
+    private Hash[] ids;
+    private TransactionOutput[] churn;
+
+    @Setup
+    public void setUp() {
+        Security.addProvider(new BouncyCastleProvider());
+        utxoSet = UTXOSet.getInstance();
+        utxoSet.clear();
+        final Wallet wallet = new Wallet();
+        ids = new Hash[size];
+        churn = new TransactionOutput[size];
+        for (int i = 0; i < size; i++) {
+            final TransactionOutput output = new TransactionOutput(wallet.getPublicKey(), i, StringUtil.sha256("read" + i));
+            utxoSet.add(output.getId(), output);
+            ids[i] = output.getId();
+            churn[i] = new TransactionOutput(wallet.getPublicKey(), i, StringUtil.sha256("churn" + i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        utxoSet.clear();
+    }
+
+    @Benchmark
+    @Group("contention")
+    @GroupThreads(3)
+    public TransactionOutput get() {
+        return utxoSet.get(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    @Group("contention")
+    @GroupThreads(1)
+    public TransactionOutput addRemove() {
+        final TransactionOutput output = churn[ThreadLocalRandom.current().nextInt(churn.length)];
+        utxoSet.add(output.getId(), output);
+        return utxoSet.remove(output.getId());
+    }
+}
@@ -0,0 +1,101 @@
+package com.liquiduspro.benchmark;
+
+import com.liquiduspro.domain.Wallet;
+import com.liquiduspro.domain.transaction.TransactionOutput;
+import com.liquiduspro.singleton.UTXOSet;
+import com.liquiduspro.util.Hash;
+import com.liquiduspro.util.StringUtil;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.Security;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the striped {@link UTXOSet} with the former single read/write lock implementation
+ * ({@link ReadWriteLockUTXOSet}) under a read-mostly and a write-heavy mix of threads.
+ * Run with e.g. {@code -p implementation=striped,readWriteLock}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Benchmark)
+public class UTXOSetContentionBenchmark {
+    @Param({"striped", "readWriteLock"})
+    public String implementation;
+    @Param({"10000"})
+    public int size;
+    private UTXOSet striped;
+    private ReadWriteLockUTXOSet readWriteLock;
+    private Hash[] ids;
+    private TransactionOutput[] churn;
+
+    @Setup
+    public void setUp() {
+        Security.addProvider(new BouncyCastleProvider());
+        striped = UTXOSet.getInstance();
+        striped.clear();
+        readWriteLock = new ReadWriteLockUTXOSet();
+        final Wallet wallet = new Wallet();
+        ids = new Hash[size];
+        churn = new TransactionOutput[size];
+        for (int i = 0; i < size; i++) {
+            final TransactionOutput output = new TransactionOutput(wallet.getPublicKey(), i, StringUtil.sha256("read" + i));
+            ids[i] = output.getId();
+            churn[i] = new TransactionOutput(wallet.getPublicKey(), i, StringUtil.sha256("churn" + i));
+            striped.add(output.getId(), output);
+            readWriteLock.add(output.getId(), output);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        striped.clear();
+    }
+
+    @Benchmark
+    @Group("readMostly")
+    @GroupThreads(3)
+    public TransactionOutput readMostlyGet() {
+        return get();
+    }
+
+    @Benchmark
+    @Group("readMostly")
+    @GroupThreads(1)
+    public TransactionOutput readMostlyAddRemove() {
+        return addRemove();
+    }
+
+    @Benchmark
+    @Group("writeHeavy")
+    @GroupThreads(1)
+    public TransactionOutput writeHeavyGet() {
+        return get();
+    }
+
+    @Benchmark
+    @Group("writeHeavy")
+    @GroupThreads(3)
+    public TransactionOutput writeHeavyAddRemove() {
+        return addRemove();
+    }
+
+    private TransactionOutput get() {
+        final Hash id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+        return implementation.equals("striped") ? striped.get(id) : readWriteLock.get(id);
+    }
+
+    private TransactionOutput addRemove() {
+        final TransactionOutput output = churn[ThreadLocalRandom.current().nextInt(churn.length)];
+        if (implementation.equals("striped")) {
+            striped.add(output.getId(), output);
+            return striped.remove(output.getId());
+        }
+        readWriteLock.add(output.getId(), output);
+        return readWriteLock.remove(output.getId());
+    }
+}
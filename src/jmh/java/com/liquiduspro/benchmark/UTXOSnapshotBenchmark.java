@@ -0,0 +1,87 @@
+package com.liquiduspro.benchmark;
+
+import com.liquiduspro.domain.Wallet;
+import com.liquiduspro.domain.transaction.TransactionOutput;
+import com.liquiduspro.singleton.UTXOSet;
+import com.liquiduspro.util.Hash;
+import com.liquiduspro.util.StringUtil;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.Security;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures taking a consistent view of the {@link UTXOSet} and reading one output from it while a writer keeps
+ * adding and removing outputs: a {@link UTXOSet#snapshot() snapshot} against a {@link UTXOSet#getAll() copy}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Benchmark)
+public class UTXOSnapshotBenchmark {
+    @Param({"10000", "100000"})
+    public int size;
+    private UTXOSet utxoSet;
+    private Hash[] ids;
+    private TransactionOutput[] churn;
+
+    @Setup
+    public void setUp() {
+        Security.addProvider(new BouncyCastleProvider());
+        utxoSet = UTXOSet.getInstance();
+        utxoSet.clear();
+        final Wallet wallet = new Wallet();
+        ids = new Hash[size];
+        churn = new TransactionOutput[size];
+        for (int i = 0; i < size; i++) {
+            final TransactionOutput output = new TransactionOutput(wallet.getPublicKey(), i, StringUtil.sha256("read" + i));
+            utxoSet.add(output.getId(), output);
+            ids[i] = output.getId();
+            churn[i] = new TransactionOutput(wallet.getPublicKey(), i, StringUtil.sha256("churn" + i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        utxoSet.clear();
+    }
+
+    @Benchmark
+    @Group("snapshot")
+    public TransactionOutput snapshot() {
+        return read(utxoSet.snapshot());
+    }
+
+    @Benchmark
+    @Group("snapshot")
+    public TransactionOutput snapshotWriter() {
+        return addRemove();
+    }
+
+    @Benchmark
+    @Group("copy")
+    public TransactionOutput copy() {
+        return read(utxoSet.getAll());
+    }
+
+    @Benchmark
+    @Group("copy")
+    public TransactionOutput copyWriter() {
+        return addRemove();
+    }
+
+    private TransactionOutput read(final Map<Hash, TransactionOutput> view) {
+        return view.get(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    private TransactionOutput addRemove() {
+        final TransactionOutput output = churn[ThreadLocalRandom.current().nextInt(churn.length)];
+        utxoSet.add(output.getId(), output);
+        return utxoSet.remove(output.getId());
+    }
+}
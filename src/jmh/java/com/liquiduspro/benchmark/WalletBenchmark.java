@@ -0,0 +1,51 @@
+package com.liquiduspro.benchmark;
+
+import com.liquiduspro.domain.Wallet;
+import com.liquiduspro.domain.transaction.TransactionOutput;
+import com.liquiduspro.singleton.UTXOSet;
+import com.liquiduspro.util.StringUtil;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.Security;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Wallet#getBalance()} against a large global {@link UTXOSet}
+ * where the wallet owns one output in a hundred.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Benchmark)
+public class WalletBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int size;
+    private Wallet wallet;
+
+    @Setup
+    public void setUp() {
+        Security.addProvider(new BouncyCastleProvider());
+        final UTXOSet utxoSet = UTXOSet.getInstance();
+        utxoSet.clear();
+        wallet = new Wallet();
+        final Wallet other = new Wallet();
+        for (int i = 0; i < size; i++) {
+            final Wallet owner = (i % 100 == 0) ? wallet : other;
+            final TransactionOutput output = new TransactionOutput(owner.getPublicKey(), 1f, StringUtil.sha256("tx" + i));
+            utxoSet.add(output.getId(), output);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        UTXOSet.getInstance().clear();
+    }
+
+    @Benchmark
+    public float getBalance() {
+        return wallet.getBalance();
+    }
+}
@@ -3,6 +3,6 @@ package com.liquiduspro;
 public class App {
 
     public static void main(String[] args) {
-        NoobChain.testNoobChain();
+        NoobChain.run();
     }
 }
@@ -1,23 +1,31 @@
 package com.liquiduspro;
 
-import com.google.gson.GsonBuilder;
 import com.liquiduspro.domain.Block;
 import com.liquiduspro.domain.Wallet;
 import com.liquiduspro.domain.transaction.Transaction;
 import com.liquiduspro.domain.transaction.TransactionInput;
 import com.liquiduspro.domain.transaction.TransactionOutput;
+import com.liquiduspro.domain.transaction.UTXOLookup;
+import com.liquiduspro.execution.BlockValidator;
+import com.liquiduspro.mempool.Mempool;
+import com.liquiduspro.metrics.Metrics;
+import com.liquiduspro.mempool.Priority;
 import com.liquiduspro.singleton.Blockchain;
 import com.liquiduspro.singleton.UTXOSet;
+import com.liquiduspro.singleton.UTXOSnapshot;
 import com.liquiduspro.util.Constants;
 import com.liquiduspro.util.ErrorMessage;
+import com.liquiduspro.util.Hash;
 import com.liquiduspro.util.TransactionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.Security;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.random.RandomGenerator;
 
 public class NoobChain {
@@ -26,17 +34,26 @@ public class NoobChain {
     public static UTXOSet UTXOs = UTXOSet.getInstance();
     public static Wallet walletA;
     public static Wallet walletB;
+    private static final Mempool MEMPOOL = new Mempool(Priority.VALUE);
+    // highest block that passed isChainValid, null until the first call, the genesis block is trusted
+    private static Checkpoint validated;
 
     public static void run() {
         simulateTransactions(Constants.NUM_OF_TRANSACTIONS);
         System.out.println("\n==================Validate NoobChain==================");
         System.out.println("Is chain valid: " + isChainValid());
         System.out.println("\n==================NoobChain==================");
-        String blockchainJSON = new GsonBuilder()
-                .setPrettyPrinting()
-                .create()
-                .toJson(blockchain.getChain());
-        System.out.println(blockchainJSON);
+        exportChain(Path.of(Constants.EXPORT_FILE));
+    }
+
+    private static void exportChain(Path file) {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final long bytes = blockchain.exportTo(channel);
+            System.out.println("Exported " + blockchain.size() + " blocks (" + bytes + " bytes) to " + file);
+        } catch (IOException e) {
+            logger.warn("Could not export the chain to {}: {}", file, e.toString());
+        }
     }
 
     private static void simulateTransactions(int numOfTransactions) {
@@ -51,38 +68,60 @@ public class NoobChain {
 
         // create the rest of the blocks
         logger.info("Creating and Mining Genesis block... ");
-        final Block genesisBlock = new Block("0");
+        final Block genesisBlock = new Block(Hash.ZERO);
         genesisBlock.addTransaction(genesisTransaction);
         addBlock(genesisBlock);
 
         RandomGenerator randomGenerator = RandomGenerator.getDefault();
-        // generate transactions and add them to the blockchain
+        // submit transactions to the mempool and mine them in blocks of up to TRANSACTIONS_PER_BLOCK
         for (int i = 0; i < numOfTransactions; i++) {
-            final String previousHash = blockchain.get(blockchain.size() - 1).getHash();
-            final Block newBlock = new Block(previousHash);
             final float randomAmount = randomGenerator.nextFloat(100f);
             // send transactions randomly
-            if (i % 2 == 0) {
-                try {
-                    newBlock.addTransaction(walletA.sendFunds(walletB.getPublicKey(), randomAmount));
-                    logger.info("Wallet A attempting to send {} NoobCoins to Wallet B", randomAmount);
-                } catch (TransactionException e) {
-                    logger.warn(e.getMessage());
-                }
-            } else {
-                try {
-                    newBlock.addTransaction(walletB.sendFunds(walletA.getPublicKey(), randomAmount));
-                    logger.info("Wallet B attempting to send {} NoobCoins to Wallet A", randomAmount);
-                } catch (TransactionException e) {
-                    logger.warn(e.getMessage());
-                }
+            final Wallet sender = (i % 2 == 0) ? walletA : walletB;
+            final Wallet recipient = (i % 2 == 0) ? walletB : walletA;
+            logger.info("Wallet {} attempting to send {} NoobCoins to Wallet {}",
+                    sender == walletA ? "A" : "B", randomAmount, recipient == walletA ? "A" : "B");
+            boolean submitted = submitTransaction(sender, recipient, randomAmount);
+            if (!submitted && MEMPOOL.size() > 0) {
+                // the sender's coins are held by a pending transaction or its incoming coins are still pending,
+                // mine them and try again
+                mineMempool();
+                submitted = submitTransaction(sender, recipient, randomAmount);
+            }
+            if (!submitted) {
+                logger.warn("Transaction of {} NoobCoins from Wallet {} was dropped", randomAmount,
+                        sender == walletA ? "A" : "B");
+            }
+            if (MEMPOOL.size() >= Constants.TRANSACTIONS_PER_BLOCK) {
+                mineMempool();
             }
-            logger.info("Wallet A balance: {}", walletA.getBalance());
-            logger.info("Wallet B balance: {}", walletB.getBalance());
-            addBlock(newBlock);
+        }
+        if (MEMPOOL.size() > 0) {
+            mineMempool();
         }
     }
 
+    // true if the transaction is pending in the mempool
+    private static boolean submitTransaction(Wallet sender, Wallet recipient, float amount) {
+        try {
+            return MEMPOOL.submit(sender.sendFunds(recipient.getPublicKey(), amount));
+        } catch (TransactionException e) {
+            logger.warn(e.getMessage());
+            return false;
+        }
+    }
+
+    private static void mineMempool() {
+        Block block = MEMPOOL.assembleBlock(blockchain.getLatestBlockHash(), Constants.TRANSACTIONS_PER_BLOCK);
+        while (block == null) {
+            // the UTXO set kept changing, the transactions are still pending
+            block = MEMPOOL.assembleBlock(blockchain.getLatestBlockHash(), Constants.TRANSACTIONS_PER_BLOCK);
+        }
+        addBlock(block);
+        logger.info("Wallet A balance: {}", walletA.getBalance());
+        logger.info("Wallet B balance: {}", walletB.getBalance());
+    }
+
     private static void addBlock(Block block) {
         block.mineBlock(Constants.DIFFICULTY);
         blockchain.addBlock(block);
@@ -90,7 +129,7 @@ public class NoobChain {
 
     private static Transaction createGenesisTransaction(final Wallet from) {
         // create genesis transaction, which sends 100 NoobCoin to walletA
-        TransactionInput genesisTransactionInput = new TransactionInput("0");
+        TransactionInput genesisTransactionInput = new TransactionInput(Hash.ZERO);
         genesisTransactionInput.setUTXO(new TransactionOutput(from.getPublicKey(), Constants.INITIAL_AMOUNT_OF_COINS, genesisTransactionInput.getTransactionOutputId()));
         Transaction genesisTransaction = new Transaction(from.getPublicKey(), walletA.getPublicKey(), Constants.INITIAL_AMOUNT_OF_COINS, List.of(genesisTransactionInput));
         genesisTransaction.generateSignature(from.getPrivateKey());
@@ -102,15 +141,38 @@ public class NoobChain {
         return genesisTransaction;
     }
 
-    private static Boolean isChainValid() {
+    public static Boolean isChainValid() {
+        return isChainValid(false);
+    }
+
+    /**
+     * Checks hashes, links, proof-of-work and transactions of the chain, the transactions of every block against the
+     * outputs left unspent by the blocks before it. Unless a full validation is requested, blocks up to the last
+     * successful call are skipped as long as the block at that height still has the same hash, its unspent outputs
+     * are kept with the checkpoint.
+     *
+     * @param fullValidation re-check every block from height 1, e.g. after the chain was replaced
+     */
+    public static Boolean isChainValid(boolean fullValidation) {
+        final long start = System.nanoTime();
         Block currentBlock, previousBlock;
-        final String hashTarget = new String(new char[Constants.DIFFICULTY]).replace('\0', '0');
-        final Map<String, TransactionOutput> tempUTXOs = new HashMap<>(UTXOs.getUTXOs());
+        final int size = blockchain.size();
+        if (size == 0) return true;
+        Checkpoint checkpoint = validated;
+        if (checkpoint == null || fullValidation || checkpoint.height() >= size
+                || !blockchain.getHeader(checkpoint.height()).hash().equals(checkpoint.hash())) {
+            if (checkpoint != null && !fullValidation) {
+                logger.warn("Checkpoint #{} does not match the chain, validating all blocks", checkpoint.height());
+            }
+            checkpoint = genesisCheckpoint();
+        }
+        UTXOSnapshot tempUTXOs = checkpoint.utxos();
 
-        for (int i = 1; i < blockchain.size(); i++) {
+        for (int i = checkpoint.height() + 1; i < size; i++) {
+            final long blockStart = System.nanoTime();
             currentBlock = blockchain.get(i);
             previousBlock = blockchain.get(i - 1);
-            final String calcCurrBlockHash = currentBlock.calculateHash();
+            final Hash calcCurrBlockHash = currentBlock.calculateHash();
 
             // check if hash is correct
             if (!currentBlock.getHash().equals(calcCurrBlockHash)) {
@@ -124,57 +186,64 @@ public class NoobChain {
                 return false;
             }
             // check if hash is less than target
-            if (!currentBlock.getHash().substring(0, Constants.DIFFICULTY).equals(hashTarget)) {
+            if (!currentBlock.getHash().meetsDifficulty(Constants.DIFFICULTY)) {
                 logger.warn("This block hasn't been mined");
                 return false;
             }
-            if (validateTransactions(currentBlock, tempUTXOs)) {
-                logger.info("Block {} is valid", i);
-                tempUTXOs.clear();
+            tempUTXOs = validateTransactions(currentBlock, tempUTXOs);
+            if (tempUTXOs == null) {
+                logger.warn("Block {} has invalid transactions", i);
+                return false;
             }
+            Metrics.VALIDATION.recordBlockValidation(System.nanoTime() - blockStart);
         }
+        validated = new Checkpoint(size - 1, blockchain.getHeader(size - 1).hash(), tempUTXOs);
+        Metrics.VALIDATION.recordChainValidation(System.nanoTime() - start);
         return true;
     }
 
-    private static boolean validateTransactions(Block currentBlock, Map<String, TransactionOutput> tempUTXOs) {
-        if (currentBlock.getTransactions().isEmpty()) {
-            logger.warn("This block has no transactions");
-            return false;
+    // the trusted genesis block with the coins its transactions mint
+    private static Checkpoint genesisCheckpoint() {
+        final Block genesis = blockchain.get(0);
+        UTXOSnapshot utxos = UTXOSnapshot.EMPTY;
+        for (Transaction transaction : genesis.getTransactions()) {
+            for (TransactionOutput output : transaction.getOutputs()) {
+                utxos = utxos.with(output);
+            }
         }
-        for (Transaction transaction : currentBlock.getTransactions()) {
-            // verify transaction
-            if (!transaction.verifySignature()) {
-                logger.warn(ErrorMessage.SIGNATURE_ERROR);
-                return false;
+        return new Checkpoint(0, genesis.getHash(), utxos);
+    }
+
+    /**
+     * Checks the signatures and the inputs and outputs of the block's transactions, see {@link BlockValidator}.
+     *
+     * @return the given outputs after the block's transactions, or null if the block is invalid
+     */
+    private static UTXOSnapshot validateTransactions(Block currentBlock, UTXOSnapshot tempUTXOs) {
+        final BlockValidator validator = BlockValidator.getInstance();
+        final UTXOSnapshot unspent = tempUTXOs;
+        final UTXOLookup lookup = id -> {
+            final TransactionOutput output = unspent.get(id);
+            if (output == null) {
+                throw new TransactionException(ErrorMessage.UTXO_NOT_FOUND);
             }
-            float inputValue = 0;
-            // check if transaction is valid
+            return output;
+        };
+        if (!validator.hasValidSignatures(currentBlock) || !validator.hasValidTransactions(currentBlock, lookup, false)) {
+            return null;
+        }
+        for (Transaction transaction : currentBlock.getTransactions()) {
             for (TransactionInput input : transaction.getInputs()) {
-                TransactionOutput referencedUTXO = tempUTXOs.get(input.getTransactionOutputId());
-                if (referencedUTXO == null) {
-                    logger.warn("Referenced UTXO not found in tempUTXOs");
-                    return false;
-                }
-                if (input.getUTXO().getValue() != referencedUTXO.getValue()) {
-                    logger.warn("Referenced UTXO input value is incorrect");
-                    return false;
-                }
-                tempUTXOs.remove(input.getTransactionOutputId());
-                inputValue += input.getUTXO().getValue();
-            }
-            float outputValue = 0;
-            for (TransactionOutput output : transaction.getOutputs()) {
-                outputValue += output.getValue();
-                tempUTXOs.put(output.getId(), output);
-            }
-            if (inputValue != outputValue) {
-                logger.warn("Inputs total value does not equal outputs total value");
-                return false;
+                tempUTXOs = tempUTXOs.without(input.getTransactionOutputId());
             }
             for (TransactionOutput output : transaction.getOutputs()) {
-                tempUTXOs.put(output.getId(), output);
+                tempUTXOs = tempUTXOs.with(output);
             }
         }
-        return true;
+        return tempUTXOs;
+    }
+
+    // validated block with the outputs left unspent after it
+    private record Checkpoint(int height, Hash hash, UTXOSnapshot utxos) {
     }
-}
\ No newline at end of file
+}
@@ -1,9 +1,11 @@
 package com.liquiduspro;
 
-import com.google.gson.GsonBuilder;
 import com.liquiduspro.domain.Block;
+import com.liquiduspro.metrics.Metrics;
+import com.liquiduspro.mining.CooperativeMiner;
 import com.liquiduspro.singleton.Blockchain;
 import com.liquiduspro.util.Constants;
+import com.liquiduspro.util.Hash;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,12 +17,16 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 /**
- * Uses {@link java.util.concurrent.ExecutorService} and {@link java.util.concurrent.Future}
- * to parallelize the mining process.
- * Average performance gain is ~2.5x faster than sequential
- * <ul>Blockchain mining performance (Blocks #: 100. Difficulty: 5):
- *     <li>Sequential = Total mining execution time: 115 seconds</li>
- *     <li>Parallel = Total mining execution time: 51 seconds</li>
+ * Parallelizes the mining process in two ways:
+ * <ul>
+ *     <li>{@link #run()} mines one block at a time with a {@link CooperativeMiner}: the nonce space
+ *     is split across {@link Constants#AVAILABLE_PROCESSORS} workers, so throughput scales with the cores.</li>
+ *     <li>{@link #runCompetitive()} uses {@link java.util.concurrent.ExecutorService} and {@link java.util.concurrent.Future}
+ *     to let every thread race on its own candidate block. Losers give up their block as soon as the
+ *     {@link Blockchain#getTipEpoch() tip epoch} changes and retry on the new tip, blocks that still lose the
+ *     race stay on side branches of the {@link Blockchain} and win if their branch gets more work.
+ *     Average performance gain is ~2.5x faster than sequential
+ *     (Blocks #: 100. Difficulty: 5. Sequential: 115 seconds, Parallel: 51 seconds).</li>
  * </ul>
  *
  * @author econlq
@@ -31,8 +37,12 @@ public class ParallelNoobChain {
 
     public static void run() {
         printConstants();
-        runParallelMining();
-//        printNoobChain();
+        runParallelMining(true);
+    }
+
+    public static void runCompetitive() {
+        printConstants();
+        runParallelMining(false);
     }
 
     private static void printConstants() {
@@ -41,22 +51,29 @@ public class ParallelNoobChain {
         System.out.println("Number of Blocks: " + Constants.NUM_OF_BLOCKS);
     }
 
-    private static void printNoobChain() {
-        System.out.println("\n==================The Parallel NoobChain==================");
-        String blockchainJSON = new GsonBuilder().setPrettyPrinting().create().toJson(BLOCKCHAIN.getChain());
-        System.out.println(blockchainJSON);
+    // all threads mine the same block on disjoint nonce ranges
+    private static void cooperativeMining(int numberOfThreads, int numOfBlocks) {
+        try (CooperativeMiner miner = new CooperativeMiner(numberOfThreads)) {
+            for (int i = BLOCKCHAIN.size(); i < numOfBlocks; i++) {
+                Block block = new Block(BLOCKCHAIN.getLatestBlockHash());
+                miner.mine(block, Constants.DIFFICULTY);
+                if (!BLOCKCHAIN.addBlock(block)) {
+                    throw new IllegalStateException("Mined block was rejected: " + block.getHash());
+                }
+            }
+        }
     }
 
-    // parallel blockchain mining
-    private static void parallelMining(int numberOfThreads, int numOfBlocks) {
+    // every thread races on its own candidate block
+    private static void competitiveMining(int numberOfThreads, int numOfBlocks) {
         ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
         List<Future<Block>> futureList = new ArrayList<Future<Block>>();
 
         // Mine the first block separately
         if (BLOCKCHAIN.size() == 0) {
-            Block genesisBlock = new Block("0");
+            Block genesisBlock = new Block(Hash.ZERO);
             genesisBlock.mineBlock(Constants.DIFFICULTY);
-            BLOCKCHAIN.getChain().add(genesisBlock);
+            BLOCKCHAIN.addBlock(genesisBlock);
         }
 
         for (int i = 1; i < numOfBlocks; i++) {
@@ -64,8 +81,7 @@ public class ParallelNoobChain {
         }
         for (Future<Block> future : futureList) {
             try {
-                Block block = future.get();
-                BLOCKCHAIN.getChain().add(block); // add verified block to the blockchain
+                future.get(); // the block was added to the blockchain by its miner
             } catch (ExecutionException | InterruptedException e) {
                 logger.warn(e.toString());
                 throw new RuntimeException(e);
@@ -75,20 +91,32 @@ public class ParallelNoobChain {
     }
 
     private static Block mineBlock() {
-        Block block;
-        do {
-            String latestHash = BLOCKCHAIN.getLatestBlockHash();
-            block = new Block(latestHash);
-            block.mineBlock(Constants.DIFFICULTY);
-            logger.info("Block {} was not added to the blockchain. Retrying...", block.getHash());
-        } while (!BLOCKCHAIN.addBlock(block));
-        return block;
+        while (true) {
+            // read the epoch first, so a tip change after reading the hash cancels the block
+            final long epoch = BLOCKCHAIN.getTipEpoch();
+            Hash latestHash = BLOCKCHAIN.getLatestBlockHash();
+            Block block = new Block(latestHash);
+            if (!block.mineBlock(Constants.DIFFICULTY, () -> BLOCKCHAIN.getTipEpoch() != epoch)) {
+                continue; // another thread extended the chain while mining
+            }
+            if (BLOCKCHAIN.addMinedBlock(block) == Blockchain.AddResult.EXTENDED) {
+                return block;
+            }
+            // another thread extended the chain first, the block is kept on a side branch or its branch replaced
+            // the tip without making the chain longer
+            Metrics.MINING.recordStaleRetry();
+            logger.info("Block {} did not extend the blockchain. Retrying on the new tip...", block.getHash());
+        }
     }
 
-    private static void runParallelMining() {
+    private static void runParallelMining(boolean cooperative) {
         System.out.println("===========================Parallel Mining===========================");
         long startTime = System.currentTimeMillis();
-        parallelMining(Constants.AVAILABLE_PROCESSORS, Constants.NUM_OF_BLOCKS);
+        if (cooperative) {
+            cooperativeMining(Constants.AVAILABLE_PROCESSORS, Constants.NUM_OF_BLOCKS);
+        } else {
+            competitiveMining(Constants.AVAILABLE_PROCESSORS, Constants.NUM_OF_BLOCKS);
+        }
         long endTime = System.currentTimeMillis();
         System.out.println("\nTotal mining execution time: " + ((endTime - startTime) / 1000) + " seconds");
         // validate blockchain
@@ -0,0 +1,103 @@
+package com.liquiduspro.crypto;
+
+import com.liquiduspro.domain.transaction.Transaction;
+import com.liquiduspro.util.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verifies the signatures of a batch of transactions (a block or a mempool batch) on a pool of workers.
+ * <br>
+ * The batch is cut into one contiguous chunk per worker, each worker verifies its chunk with its own reusable
+ * {@link java.security.Signature} (see {@link com.liquiduspro.util.StringUtil#verifyECDSASignature}).
+ * Batches smaller than {@link #MIN_CHUNK} per worker are verified on the calling thread.
+ *
+ * @author econlq
+ */
+public final class BatchSignatureVerifier implements AutoCloseable {
+    public static final int MIN_CHUNK = 8;
+    private static final Logger logger = LoggerFactory.getLogger(BatchSignatureVerifier.class);
+    private static final BatchSignatureVerifier INSTANCE = new BatchSignatureVerifier(Constants.AVAILABLE_PROCESSORS);
+    private final int workers;
+    private final ExecutorService executor;
+
+    public BatchSignatureVerifier(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Number of workers must be positive: " + workers);
+        }
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.workers = workers;
+        this.executor = Executors.newFixedThreadPool(workers, runnable -> {
+            final Thread thread = new Thread(runnable, "signature-verifier-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // shared verifier with one worker per available processor
+    public static BatchSignatureVerifier getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the verification result of every transaction, in the order of the batch
+     */
+    public boolean[] verify(final List<Transaction> transactions) {
+        final int size = transactions.size();
+        final boolean[] results = new boolean[size];
+        final int chunks = Math.min(workers, size / MIN_CHUNK);
+        if (chunks <= 1) {
+            verifyRange(transactions, results, 0, size);
+            return results;
+        }
+        final List<Callable<Void>> tasks = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            final int from = (int) ((long) size * i / chunks);
+            final int to = (int) ((long) size * (i + 1) / chunks);
+            tasks.add(() -> {
+                verifyRange(transactions, results, from, to);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Signature verification was interrupted", e);
+        } catch (ExecutionException e) {
+            logger.warn(e.toString());
+            throw new RuntimeException(e);
+        }
+        return results;
+    }
+
+    // true if every signature of the batch is valid
+    public boolean verifyAll(final List<Transaction> transactions) {
+        for (boolean valid : verify(transactions)) {
+            if (!valid) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private static void verifyRange(final List<Transaction> transactions, final boolean[] results, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            results[i] = transactions.get(i).verifySignature();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.liquiduspro.crypto;
+
+import java.security.PublicKey;
+
+/**
+ * Interned public key handed out by the {@link KeyRegistry}: one instance per distinct key, so handles compare by
+ * identity and hash by their small {@link #getId() id}.
+ * The X.509 encoding and its Base64 form are computed once and shared by hashing, signing and storage.
+ *
+ * @author econlq
+ */
+public final class KeyHandle {
+    private final int id;
+    private final PublicKey key;
+    private final byte[] encoded;
+    private final String encodedString;
+
+    KeyHandle(int id, PublicKey key, byte[] encoded, String encodedString) {
+        this.id = id;
+        this.key = key;
+        this.encoded = encoded;
+        this.encodedString = encodedString;
+    }
+
+    // index of the key in its registry, stable for the lifetime of the process
+    public int getId() {
+        return id;
+    }
+
+    public PublicKey getKey() {
+        return key;
+    }
+
+    // shared X.509 encoding, must not be modified
+    public byte[] getEncoded() {
+        return encoded;
+    }
+
+    // Base64 of the X.509 encoding, same as StringUtil.getStringFromKey
+    public String getEncodedString() {
+        return encodedString;
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return "KeyHandle#" + id;
+    }
+}
@@ -0,0 +1,160 @@
+package com.liquiduspro.crypto;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.PublicKey;
+import java.security.Security;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns public keys into {@link KeyHandle}s.
+ * <br>
+ * A key instance seen before is found by identity without encoding it, another instance of a known key (e.g. decoded
+ * from a {@link com.liquiduspro.storage.BlockStore}) is found by its encoding and maps to the same handle, and
+ * {@link #intern(byte[])} skips decoding for known encodings. Handles are never released, the registry grows with the
+ * number of distinct keys seen by the process. Key instances are only held weakly, so decoding the same keys over and
+ * over doesn't grow it.
+ *
+ * @author econlq
+ */
+public final class KeyRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(KeyRegistry.class);
+    private static final KeyRegistry INSTANCE = new KeyRegistry();
+    private static final ThreadLocal<KeyFactory> KEY_FACTORY = ThreadLocal.withInitial(() -> {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+        try {
+            return KeyFactory.getInstance("ECDSA", BouncyCastleProvider.PROVIDER_NAME);
+        } catch (NoSuchAlgorithmException | NoSuchProviderException e) {
+            throw new RuntimeException(e);
+        }
+    });
+    // avoids BCECPublicKey.hashCode/equals, which encode the key on every call
+    private final Map<Identity, KeyHandle> byInstance = new ConcurrentHashMap<>();
+    // instances that were garbage collected, their entries are removed on the next registration
+    private final ReferenceQueue<PublicKey> collected = new ReferenceQueue<>();
+    // Base64 encoding -> handle
+    private final Map<String, KeyHandle> byEncoding = new ConcurrentHashMap<>();
+    // id of the next registered handle
+    private int size;
+
+    private KeyRegistry() {
+    }
+
+    public static KeyRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the handle of the key, {@code null} for a {@code null} key
+     */
+    public KeyHandle intern(final PublicKey key) {
+        if (key == null) return null;
+        final KeyHandle known = byInstance.get(new Probe(key));
+        if (known != null) return known;
+        final byte[] encoded = key.getEncoded();
+        final KeyHandle handle = register(key, encoded, Base64.getEncoder().encodeToString(encoded));
+        remember(key, handle);
+        return handle;
+    }
+
+    /**
+     * Handle of an X.509 encoded key, the key is only decoded the first time its encoding is seen.
+     */
+    public KeyHandle intern(final byte[] encoded) {
+        if (encoded == null) return null;
+        final String encodedString = Base64.getEncoder().encodeToString(encoded);
+        final KeyHandle known = byEncoding.get(encodedString);
+        if (known != null) return known;
+        final KeyHandle handle = register(decode(encoded), encoded.clone(), encodedString);
+        remember(handle.getKey(), handle);
+        return handle;
+    }
+
+    private void remember(final PublicKey key, final KeyHandle handle) {
+        for (Reference<? extends PublicKey> stale = collected.poll(); stale != null; stale = collected.poll()) {
+            byInstance.remove(stale);
+        }
+        byInstance.putIfAbsent(new WeakIdentity(key, collected), handle);
+    }
+
+    public int size() {
+        return byEncoding.size();
+    }
+
+    // first registration of an encoding wins, later instances share its handle and key
+    private synchronized KeyHandle register(final PublicKey key, final byte[] encoded, final String encodedString) {
+        final KeyHandle existing = byEncoding.get(encodedString);
+        if (existing != null) return existing;
+        final KeyHandle handle = new KeyHandle(size++, key, encoded, encodedString);
+        byEncoding.put(encodedString, handle);
+        return handle;
+    }
+
+    private static PublicKey decode(final byte[] encoded) {
+        try {
+            return KEY_FACTORY.get().generatePublic(new X509EncodedKeySpec(encoded));
+        } catch (InvalidKeySpecException e) {
+            logger.warn("Error while decoding public key: {}", e.toString());
+            throw new RuntimeException(e);
+        }
+    }
+
+    // key of the identity map, equal to any other identity of the same key instance
+    private interface Identity {
+        PublicKey key();
+    }
+
+    // lookup key, unlike a WeakIdentity it leaves the garbage collector no reference to process
+    private record Probe(PublicKey key) implements Identity {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Identity other && other.key() == key;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(key);
+        }
+    }
+
+    // stored key, a cleared reference only equals itself
+    private static final class WeakIdentity extends WeakReference<PublicKey> implements Identity {
+        private final int hash;
+
+        private WeakIdentity(final PublicKey key, final ReferenceQueue<PublicKey> queue) {
+            super(key, queue);
+            this.hash = System.identityHashCode(key);
+        }
+
+        @Override
+        public PublicKey key() {
+            return get();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            final PublicKey key = get();
+            return key != null && o instanceof Identity other && other.key() == key;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
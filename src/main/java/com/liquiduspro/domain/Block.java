@@ -2,10 +2,13 @@ package com.liquiduspro.domain;
 
 import com.liquiduspro.domain.transaction.Transaction;
 import com.liquiduspro.domain.transaction.TransactionInput;
+import com.liquiduspro.execution.BlockExecutor;
+import com.liquiduspro.metrics.Metrics;
+import com.liquiduspro.mining.MiningEngine;
 import com.liquiduspro.singleton.UTXOSet;
 import com.liquiduspro.util.Constants;
 import com.liquiduspro.util.ErrorMessage;
-import com.liquiduspro.util.StringUtil;
+import com.liquiduspro.util.Hash;
 import com.liquiduspro.util.TransactionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,25 +16,38 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.Objects;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 public final class Block {
     private static final Logger logger = LoggerFactory.getLogger(Block.class);
-    private final String previousHash;
+    private final Hash previousHash;
     private final long timeStamp;
     private final List<Transaction> transactions = new ArrayList<>(); // <--- CHANGE LATER>
     private AtomicInteger nonce;
-    private String merkleRoot;
-    private String hash;
+    private Hash merkleRoot;
+    private Hash hash;
+    // tree of the transactions, built lazily for restored blocks
+    private MerkleTree merkleTree;
 
-    public Block(final String previousHash) {
+    public Block(final Hash previousHash) {
         this.previousHash = previousHash;
         this.timeStamp = new Date().getTime();
         this.nonce = new AtomicInteger(0);
         this.hash = calculateHash();
     }
 
+    // restores an already mined block, e.g. when it is read back from a BlockStore
+    public Block(final Hash previousHash, final long timeStamp, final int nonce, final Hash merkleRoot,
+                 final Hash hash, final List<Transaction> transactions) {
+        this.previousHash = previousHash;
+        this.timeStamp = timeStamp;
+        this.nonce = new AtomicInteger(nonce);
+        this.merkleRoot = merkleRoot;
+        this.hash = hash;
+        this.transactions.addAll(transactions);
+    }
+
     public AtomicInteger getNonce() {
         return nonce;
     }
@@ -44,11 +60,11 @@ public final class Block {
         return transactions;
     }
 
-    public String getHash() {
+    public Hash getHash() {
         return hash;
     }
 
-    public String getPreviousHash() {
+    public Hash getPreviousHash() {
         return previousHash;
     }
 
@@ -56,37 +72,100 @@ public final class Block {
         return timeStamp;
     }
 
+    public Hash getMerkleRoot() {
+        return merkleRoot;
+    }
+
+    // tree of the current transactions, rebuilt if the transaction list was changed directly
+    public MerkleTree getMerkleTree() {
+        if (merkleTree == null || merkleTree.size() != transactions.size()) {
+            merkleTree = MerkleTree.build(transactions);
+        }
+        return merkleTree;
+    }
+
+    // inclusion proof of the transaction at the given position
+    public MerkleProof getMerkleProof(int index) {
+        return getMerkleTree().proof(index);
+    }
+
     // validate the block's hash
     public boolean isValid(Block previousBlock) {
         return this.getPreviousHash().equals(previousBlock.getHash())
                 && this.getHash().equals(calculateHash())
-                && this.getHash().substring(0, Constants.DIFFICULTY).equals("0".repeat(Constants.DIFFICULTY));
+                && this.getHash().meetsDifficulty(Constants.DIFFICULTY);
+    }
+
+    // hashes the hex form of the header: previousHash + timeStamp + nonce + merkleRoot
+    public Hash calculateHash() {
+        return BlockHeader.calculateHash(previousHash, timeStamp, nonce.get(), merkleRoot);
     }
 
-    public String calculateHash() {
-        final String hashToCalculate = previousHash + timeStamp + nonce + merkleRoot;
-        return StringUtil.applySha256(hashToCalculate);
+    public BlockHeader getHeader() {
+        return BlockHeader.of(this);
     }
 
     /**
      * This function is used to mine the block.
+     * The nonce search runs on the binary header through {@link MiningEngine},
+     * the winning nonce is then verified with {@link #calculateHash()}.
      *
      * @param difficulty the number of 0's needed to mine the block
      */
     public void mineBlock(int difficulty) {
-        // create a string with difficulty * "0"
-        this.merkleRoot = StringUtil.getMerkleRoot(transactions);
-        final String target = new String(new char[difficulty]).replace('\0', '0');
-        while (!hash.substring(0, difficulty).equals(target)) {
-            nonce.getAndIncrement();
-            hash = calculateHash();
+        mineBlock(difficulty, null);
+    }
+
+    /**
+     * Mines the block unless it is cancelled. The condition is polled every {@link MiningEngine#CHECK_INTERVAL}
+     * nonces, so it should be cheap, e.g. comparing {@link com.liquiduspro.singleton.Blockchain#getTipEpoch()}
+     * with the epoch the block was built on.
+     *
+     * @param difficulty the number of 0's needed to mine the block
+     * @param cancelled  optional condition to give up on the block, may be {@code null}
+     * @return false if mining was cancelled, the block then has no valid hash
+     */
+    public boolean mineBlock(int difficulty, BooleanSupplier cancelled) {
+        final long start = System.nanoTime();
+        prepareMining();
+        final int found = newMiningEngine().search(nonce.get(), Integer.MAX_VALUE, difficulty, cancelled);
+        if (found == MiningEngine.NOT_FOUND && cancelled != null && cancelled.getAsBoolean()) {
+            Metrics.MINING.recordCancelled();
+            logger.info("Mining cancelled for block on {}", previousHash);
+            return false;
+        }
+        if (found == MiningEngine.NOT_FOUND || !applyNonce(found, difficulty)) {
+            throw new IllegalStateException("Nonce space exhausted for block " + previousHash);
         }
+        Metrics.MINING.recordBlockMined(System.nanoTime() - start);
         logger.info("Block Mined. Hash: {}", hash);
+        return true;
+    }
+
+    // fixes the merkle root, so the header stays constant while the nonce space is searched
+    public void prepareMining() {
+        this.merkleRoot = getMerkleTree().getRoot();
+    }
+
+    // mining engine over this block's header: previousHash + timeStamp | nonce | merkleRoot
+    public MiningEngine newMiningEngine() {
+        return new MiningEngine(previousHash + "" + timeStamp, String.valueOf(merkleRoot));
+    }
+
+    /**
+     * Sets a nonce found by a {@link MiningEngine} and recalculates the hash.
+     *
+     * @return true if the recalculated hash satisfies the difficulty
+     */
+    public boolean applyNonce(int nonce, int difficulty) {
+        this.nonce.set(nonce);
+        this.hash = calculateHash();
+        return hash.meetsDifficulty(difficulty);
     }
 
     public boolean addTransaction(final Transaction transaction) {
         if (transaction == null) return false;
-        if (!Objects.equals(previousHash, "0")) {
+        if (!Hash.ZERO.equals(previousHash)) {
             try {
                 if (!transaction.processTransaction()) {
                     logger.warn(ErrorMessage.INVALID_TRANSACTION);
@@ -107,8 +186,43 @@ public final class Block {
                 UTXOSet.getInstance().remove(input.getUTXO().getId());
             }
         }
-        transactions.add(transaction);
+        append(transaction);
         logger.info("Transaction successfully added to Block");
         return true;
     }
+
+    /**
+     * Adds a batch of transactions, independent ones are processed in parallel and their changes are applied
+     * to the {@link UTXOSet} at once, see {@link BlockExecutor}.
+     *
+     * @return for every transaction whether it was added, in the order of the batch
+     * @throws TransactionException if the {@link UTXOSet} kept changing while the batch was executed,
+     *                              no transaction was added then
+     */
+    public boolean[] addTransactions(final List<Transaction> batch) {
+        if (Hash.ZERO.equals(previousHash)) {
+            final boolean[] added = new boolean[batch.size()];
+            for (int i = 0; i < added.length; i++) {
+                added[i] = addTransaction(batch.get(i));
+            }
+            return added;
+        }
+        final boolean[] added = BlockExecutor.getInstance().execute(batch).applied();
+        for (int i = 0; i < added.length; i++) {
+            if (added[i]) {
+                append(batch.get(i));
+            }
+        }
+        logger.info("{} of {} transactions added to Block", transactions.size(), batch.size());
+        return added;
+    }
+
+    private void append(final Transaction transaction) {
+        transactions.add(transaction);
+        if (merkleTree != null && merkleTree.size() == transactions.size() - 1) {
+            merkleTree.append(transaction.getTransactionId());
+        } else {
+            merkleTree = MerkleTree.build(transactions);
+        }
+    }
 }
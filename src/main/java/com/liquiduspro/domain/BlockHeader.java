@@ -0,0 +1,32 @@
+package com.liquiduspro.domain;
+
+import com.liquiduspro.util.Constants;
+import com.liquiduspro.util.Hash;
+import com.liquiduspro.util.StringUtil;
+
+/**
+ * Fixed-size part of a {@link Block} without its transactions. It holds everything the hash covers, so the chain
+ * of hashes can be validated from headers alone.
+ *
+ * @author econlq
+ */
+public record BlockHeader(Hash previousHash, long timeStamp, int nonce, Hash merkleRoot, Hash hash) {
+
+    public static BlockHeader of(final Block block) {
+        return new BlockHeader(block.getPreviousHash(), block.getTimeStamp(), block.getNonce().get(),
+                block.getMerkleRoot(), block.getHash());
+    }
+
+    // same as Block#calculateHash()
+    public static Hash calculateHash(final Hash previousHash, final long timeStamp, final int nonce,
+                                     final Hash merkleRoot) {
+        return StringUtil.sha256(previousHash + "" + timeStamp + nonce + merkleRoot);
+    }
+
+    // same checks as Block#isValid(Block)
+    public boolean isValid(final BlockHeader previous) {
+        return previousHash.equals(previous.hash())
+                && hash.equals(calculateHash(previousHash, timeStamp, nonce, merkleRoot))
+                && hash.meetsDifficulty(Constants.DIFFICULTY);
+    }
+}
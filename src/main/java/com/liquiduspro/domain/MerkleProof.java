@@ -0,0 +1,69 @@
+package com.liquiduspro.domain;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Inclusion proof of one transaction in a {@link MerkleTree}: the sibling hashes from the leaf up to the root,
+ * stored back to back, and a bit per step telling whether the sibling is the left child.
+ * Serialized as {@code [int leafIndex][long lefts][byte steps][32 bytes per step]}.
+ *
+ * @author econlq
+ */
+public final class MerkleProof {
+    private static final int HASH_LENGTH = MerkleTree.HASH_LENGTH;
+    private final int leafIndex;
+    private final byte[] siblings;
+    private final long lefts;
+
+    MerkleProof(int leafIndex, byte[][] siblings, long lefts) {
+        this.leafIndex = leafIndex;
+        this.siblings = new byte[siblings.length * HASH_LENGTH];
+        for (int i = 0; i < siblings.length; i++) {
+            System.arraycopy(siblings[i], 0, this.siblings, i * HASH_LENGTH, HASH_LENGTH);
+        }
+        this.lefts = lefts;
+    }
+
+    private MerkleProof(int leafIndex, byte[] siblings, long lefts) {
+        this.leafIndex = leafIndex;
+        this.siblings = siblings;
+        this.lefts = lefts;
+    }
+
+    public static MerkleProof fromBytes(final byte[] bytes) {
+        final ByteBuffer in = ByteBuffer.wrap(bytes);
+        final int leafIndex = in.getInt();
+        final long lefts = in.getLong();
+        final byte[] siblings = new byte[(in.get() & 0xff) * HASH_LENGTH];
+        in.get(siblings);
+        return new MerkleProof(leafIndex, siblings, lefts);
+    }
+
+    public byte[] toBytes() {
+        return ByteBuffer.allocate(4 + 8 + 1 + siblings.length)
+                .putInt(leafIndex)
+                .putLong(lefts)
+                .put((byte) length())
+                .put(siblings)
+                .array();
+    }
+
+    public int getLeafIndex() {
+        return leafIndex;
+    }
+
+    // number of hashing steps from the leaf to the root
+    public int length() {
+        return siblings.length / HASH_LENGTH;
+    }
+
+    public byte[] getSibling(int step) {
+        return Arrays.copyOfRange(siblings, step * HASH_LENGTH, (step + 1) * HASH_LENGTH);
+    }
+
+    // true if the sibling of the given step is the left child
+    public boolean isLeft(int step) {
+        return (lefts >>> step & 1) == 1;
+    }
+}
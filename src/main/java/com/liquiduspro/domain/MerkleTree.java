@@ -0,0 +1,223 @@
+package com.liquiduspro.domain;
+
+import com.liquiduspro.domain.transaction.Transaction;
+import com.liquiduspro.util.Hash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serial;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Merkle tree over the transaction ids of a {@link Block}, all layers are kept as binary SHA-256 hashes.
+ * <ul>
+ *     <li>A leaf is the transaction id itself.</li>
+ *     <li>A parent is the SHA-256 of its left and right child, a node without a right sibling is promoted
+ *     to the next layer unchanged.</li>
+ *     <li>The root of an empty tree is {@link Hash#ZERO}.</li>
+ * </ul>
+ * Appending a transaction only rehashes the path from the new leaf to the root, O(log n) per transaction.
+ * Trees of at least {@link #PARALLEL_THRESHOLD} transactions hash each layer in parallel on the common
+ * {@link ForkJoinPool}. Not thread safe, a tree belongs to the block being assembled.
+ *
+ * @author econlq
+ */
+public final class MerkleTree {
+    public static final int HASH_LENGTH = Hash.LENGTH;
+    public static final int PARALLEL_THRESHOLD = 2048;
+    private static final int SEQUENTIAL_CHUNK = 512;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final Logger logger = LoggerFactory.getLogger(MerkleTree.class);
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            logger.warn("Error while creating SHA-256 digest: {}", e.toString());
+            throw new RuntimeException(e);
+        }
+    });
+    // layers.get(0) holds the leaves, the last layer holds the root once there is more than one leaf
+    private final List<Layer> layers = new ArrayList<>();
+    private Hash root = Hash.ZERO;
+
+    public MerkleTree() {
+        layers.add(new Layer(INITIAL_CAPACITY));
+    }
+
+    /**
+     * Builds the tree of the given transactions, in parallel for large blocks.
+     */
+    public static MerkleTree build(final List<Transaction> transactions) {
+        final MerkleTree tree = new MerkleTree();
+        final int count = transactions.size();
+        if (count < PARALLEL_THRESHOLD) {
+            for (Transaction transaction : transactions) {
+                tree.append(transaction.getTransactionId());
+            }
+            return tree;
+        }
+        // leaves are copies of the transaction ids, there is nothing to hash, only the parent layers are parallel
+        final Layer leaves = new Layer(count);
+        final ByteBuffer out = ByteBuffer.wrap(leaves.array);
+        for (Transaction transaction : transactions) {
+            transaction.getTransactionId().write(out);
+        }
+        leaves.size = count;
+        tree.layers.set(0, leaves);
+        Layer layer = leaves;
+        while (layer.size > 1) {
+            final Layer parents = new Layer((layer.size + 1) / 2);
+            parents.size = (layer.size + 1) / 2;
+            ForkJoinPool.commonPool().invoke(new ParentTask(layer, parents, 0, parents.size));
+            tree.layers.add(parents);
+            layer = parents;
+        }
+        tree.root = Hash.of(layer.get(0));
+        return tree;
+    }
+
+    /**
+     * Checks that the leaf at the proof's index is part of the tree with the given root.
+     */
+    public static boolean verify(final Hash transactionId, final MerkleProof proof, final Hash root) {
+        if (transactionId == null || proof == null || root == null) return false;
+        final MessageDigest digest = SHA_256.get();
+        byte[] hash = transactionId.toBytes();
+        for (int i = 0; i < proof.length(); i++) {
+            digest.update(proof.isLeft(i) ? proof.getSibling(i) : hash);
+            digest.update(proof.isLeft(i) ? hash : proof.getSibling(i));
+            hash = digest.digest();
+        }
+        return Hash.of(hash).equals(root);
+    }
+
+    /**
+     * Adds a leaf for the transaction id and rehashes its path to the root.
+     */
+    public void append(final Hash transactionId) {
+        final MessageDigest digest = SHA_256.get();
+        int index = layers.get(0).add(transactionId.toBytes());
+        for (int level = 0; layers.get(level).size > 1; level++) {
+            final Layer layer = layers.get(level);
+            if (level + 1 == layers.size()) {
+                layers.add(new Layer(Math.max(INITIAL_CAPACITY, layer.size / 2 + 1)));
+            }
+            final Layer parents = layers.get(level + 1);
+            final int parent = index >>> 1;
+            if ((index & 1) == 0) {
+                // no right sibling yet, promote
+                parents.set(parent, layer.array, index * HASH_LENGTH);
+            } else {
+                digest.update(layer.array, (index - 1) * HASH_LENGTH, 2 * HASH_LENGTH);
+                parents.set(parent, digest.digest());
+            }
+            index = parent;
+        }
+        root = Hash.of(layers.get(layers.size() - 1).get(0));
+    }
+
+    public int size() {
+        return layers.get(0).size;
+    }
+
+    public Hash getRoot() {
+        return root;
+    }
+
+    /**
+     * Inclusion proof of the leaf at the given index: the sibling of every node on its path to the root,
+     * promoted nodes have no sibling and add no step.
+     */
+    public MerkleProof proof(final int leafIndex) {
+        if (leafIndex < 0 || leafIndex >= size()) {
+            throw new IndexOutOfBoundsException("Leaf " + leafIndex + " of " + size());
+        }
+        final List<byte[]> siblings = new ArrayList<>(layers.size());
+        long lefts = 0;
+        int index = leafIndex;
+        for (int level = 0; level < layers.size() - 1; level++) {
+            final Layer layer = layers.get(level);
+            if ((index & 1) == 1) {
+                lefts |= 1L << siblings.size();
+                siblings.add(layer.get(index - 1));
+            } else if (index + 1 < layer.size) {
+                siblings.add(layer.get(index + 1));
+            }
+            index >>>= 1;
+        }
+        return new MerkleProof(leafIndex, siblings.toArray(new byte[0][]), lefts);
+    }
+
+    // one layer of hashes stored back to back
+    private static final class Layer {
+        private byte[] array;
+        private int size;
+
+        private Layer(int capacity) {
+            this.array = new byte[capacity * HASH_LENGTH];
+        }
+
+        private int add(byte[] hash) {
+            set(size, hash);
+            return size - 1;
+        }
+
+        private void set(int index, byte[] hash) {
+            set(index, hash, 0);
+        }
+
+        private void set(int index, byte[] source, int offset) {
+            if ((index + 1) * HASH_LENGTH > array.length) {
+                array = Arrays.copyOf(array, Math.max(array.length * 2, (index + 1) * HASH_LENGTH));
+            }
+            System.arraycopy(source, offset, array, index * HASH_LENGTH, HASH_LENGTH);
+            size = Math.max(size, index + 1);
+        }
+
+        private byte[] get(int index) {
+            return Arrays.copyOfRange(array, index * HASH_LENGTH, (index + 1) * HASH_LENGTH);
+        }
+    }
+
+    private static final class ParentTask extends RecursiveAction {
+        @Serial
+        private static final long serialVersionUID = 1L;
+        private final Layer children;
+        private final Layer parents;
+        private final int from;
+        private final int to;
+
+        private ParentTask(Layer children, Layer parents, int from, int to) {
+            this.children = children;
+            this.parents = parents;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_CHUNK) {
+                final MessageDigest digest = SHA_256.get();
+                for (int i = from; i < to; i++) {
+                    final int left = 2 * i;
+                    if (left + 1 < children.size) {
+                        digest.update(children.array, left * HASH_LENGTH, 2 * HASH_LENGTH);
+                        System.arraycopy(digest.digest(), 0, parents.array, i * HASH_LENGTH, HASH_LENGTH);
+                    } else {
+                        System.arraycopy(children.array, left * HASH_LENGTH, parents.array, i * HASH_LENGTH, HASH_LENGTH);
+                    }
+                }
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new ParentTask(children, parents, from, middle), new ParentTask(children, parents, middle, to));
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package com.liquiduspro.domain;
 
+import com.liquiduspro.crypto.KeyHandle;
+import com.liquiduspro.crypto.KeyRegistry;
 import com.liquiduspro.domain.transaction.Transaction;
 import com.liquiduspro.domain.transaction.TransactionInput;
 import com.liquiduspro.domain.transaction.TransactionOutput;
 import com.liquiduspro.singleton.UTXOSet;
 import com.liquiduspro.util.ErrorMessage;
+import com.liquiduspro.util.Hash;
 import com.liquiduspro.util.TransactionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,9 +24,10 @@ import java.util.Map;
  */
 public final class Wallet {
     private static final Logger logger = LoggerFactory.getLogger(Wallet.class);
-    private final Map<String, TransactionOutput> UTXOs = new HashMap<>(); //list of all unspent transactions.>
+    private final Map<Hash, TransactionOutput> UTXOs = new HashMap<>(); //list of all unspent transactions.>
     private PrivateKey privateKey;
     private PublicKey publicKey;
+    private KeyHandle keyHandle;
 
     public Wallet() {
         generateKeyPair();
@@ -37,6 +41,10 @@ public final class Wallet {
         return publicKey;
     }
 
+    public KeyHandle getKeyHandle() {
+        return keyHandle;
+    }
+
     private void generateKeyPair() {
         try {
             KeyPairGenerator keyGen = KeyPairGenerator.getInstance("ECDSA", "BC");
@@ -47,6 +55,7 @@ public final class Wallet {
             KeyPair keyPair = keyGen.generateKeyPair();
             this.privateKey = keyPair.getPrivate();
             this.publicKey = keyPair.getPublic();
+            this.keyHandle = KeyRegistry.getInstance().intern(publicKey);
         } catch (NoSuchAlgorithmException | NoSuchProviderException | InvalidAlgorithmParameterException e) {
             logger.warn("Error while generating key pair: {}", e.toString());
             throw new RuntimeException(e);
@@ -55,25 +64,20 @@ public final class Wallet {
 
     // returns a balance and stores the UTXO's owned by THIS wallet in this.UTXOs
     public float getBalance() {
-        float total = 0;
-        for (Map.Entry<String, TransactionOutput> item : UTXOSet.getInstance().getUTXOs().entrySet()) {
-            final TransactionOutput UTXO = item.getValue();
-            //if output belongs to me add it to the list of unspent transactions
-            if (UTXO.isMine(this.publicKey)) {
-                this.UTXOs.put(UTXO.getId(), UTXO);
-                total += UTXO.getValue();
-            }
-        }
-        return total;
+        final UTXOSet utxoSet = UTXOSet.getInstance();
+        this.UTXOs.clear();
+        this.UTXOs.putAll(utxoSet.getUTXOs(this.keyHandle));
+        return utxoSet.getBalance(this.keyHandle);
     }
 
     public Transaction sendFunds(PublicKey _recipient, float value) throws TransactionException {
-        if (getBalance() < value) {
-            throw new TransactionException(ErrorMessage.NO_ENOUGH_FUNDS + ". Current Balance: " + getBalance());
+        final float balance = getBalance();
+        if (balance < value) {
+            throw new TransactionException(ErrorMessage.NO_ENOUGH_FUNDS + ". Current Balance: " + balance);
         }
         List<TransactionInput> inputs = new ArrayList<>();
         float total = 0;
-        for (Map.Entry<String, TransactionOutput> item : this.UTXOs.entrySet()) {
+        for (Map.Entry<Hash, TransactionOutput> item : this.UTXOs.entrySet()) {
             final TransactionOutput UTXO = item.getValue();
             total += UTXO.getValue();
             final TransactionInput input = new TransactionInput(UTXO.getId());
@@ -1,9 +1,15 @@
 package com.liquiduspro.domain.transaction;
 
+import com.liquiduspro.crypto.KeyHandle;
+import com.liquiduspro.crypto.KeyRegistry;
+import com.liquiduspro.metrics.Metrics;
 import com.liquiduspro.singleton.UTXOSet;
 import com.liquiduspro.util.ErrorMessage;
+import com.liquiduspro.util.Hash;
 import com.liquiduspro.util.StringUtil;
 import com.liquiduspro.util.TransactionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.Serial;
 import java.io.Serializable;
@@ -11,6 +17,7 @@ import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Represents a transaction in the NoobChain
@@ -21,23 +28,50 @@ public class Transaction implements Serializable {
     public static final float MINIMUM_TRANSACTION = 0.1f;
     @Serial
     private static final long serialVersionUID = 1L;
-    private static int sequence = 0; // count of how many transactions have been processed
-    private transient final PublicKey sender; // sender's address public key
-    private transient final PublicKey recipient; // recipient's address public key
+    private static final Logger logger = LoggerFactory.getLogger(Transaction.class);
+    private static final AtomicInteger sequence = new AtomicInteger(); // count of how many transactions have been processed
+    private transient final KeyHandle sender; // sender's address public key
+    private transient final KeyHandle recipient; // recipient's address public key
     private final float value; // amount to be sent
     private final List<TransactionInput> inputs;
     private final List<TransactionOutput> outputs = new ArrayList<>();
-    private String transactionId; // hash of the transaction
+    private Hash transactionId; // hash of the transaction
     private transient byte[] signature; // digital signature of the transaction
+    private transient String signatureData; // signed content, keys and value never change
 
     public Transaction(PublicKey from, PublicKey to, float value, List<TransactionInput> inputs) {
+        this(KeyRegistry.getInstance().intern(from), KeyRegistry.getInstance().intern(to), value, inputs);
+    }
+
+    private Transaction(KeyHandle from, KeyHandle to, float value, List<TransactionInput> inputs) {
         this.sender = from;
         this.recipient = to;
         this.value = value;
         this.inputs = inputs;
     }
 
+    // restores an already processed transaction, e.g. when it is read back from a BlockStore
+    public Transaction(KeyHandle from, KeyHandle to, float value, List<TransactionInput> inputs,
+                       List<TransactionOutput> outputs, Hash transactionId, byte[] signature) {
+        this(from, to, value, inputs);
+        this.outputs.addAll(outputs);
+        this.transactionId = transactionId;
+        this.signature = signature;
+    }
+
+    public PublicKey getSender() {
+        return sender.getKey();
+    }
+
     public PublicKey getRecipient() {
+        return recipient.getKey();
+    }
+
+    public KeyHandle getSenderHandle() {
+        return sender;
+    }
+
+    public KeyHandle getRecipientHandle() {
         return recipient;
     }
 
@@ -53,67 +87,101 @@ public class Transaction implements Serializable {
         return value;
     }
 
-    public String getTransactionId() {
+    public Hash getTransactionId() {
         return transactionId;
     }
 
-    public void setTransactionId(String transactionId) {
+    public void setTransactionId(Hash transactionId) {
         this.transactionId = transactionId;
     }
 
-    private String calculateHash() {
-        sequence++; // increase sequence to avoid duplicate transactions
-        return StringUtil.applySha256(
-                StringUtil.getStringFromKey(sender)
-                        + StringUtil.getStringFromKey(recipient)
+    public byte[] getSignature() {
+        return signature;
+    }
+
+    /**
+     * Reserves {@code count} consecutive sequence numbers, e.g. one per transaction of a block, for {@link #prepare}.
+     *
+     * @return the first reserved number
+     */
+    public static int reserveSequence(final int count) {
+        return sequence.getAndAdd(count) + 1;
+    }
+
+    // the sequence number avoids duplicate transactions
+    private Hash calculateHash(final int sequence) {
+        return StringUtil.sha256(
+                sender.getEncodedString()
+                        + recipient.getEncodedString()
                         + value
                         + sequence
         );
     }
 
+    private String getSignatureData() {
+        if (signatureData == null) {
+            signatureData = sender.getEncodedString() + recipient.getEncodedString() + value;
+        }
+        return signatureData;
+    }
+
     public void generateSignature(PrivateKey privateKey) {
-        final String data = StringUtil.getStringFromKey(sender) + StringUtil.getStringFromKey(recipient) + value;
-        this.signature = StringUtil.applyECDSASignature(privateKey, data);
+        this.signature = StringUtil.applyECDSASignature(privateKey, getSignatureData());
     }
 
     public boolean verifySignature() {
-        final String data = StringUtil.getStringFromKey(sender) + StringUtil.getStringFromKey(recipient) + value;
-        return StringUtil.verifyECDSASignature(sender, data, signature);
+        Metrics.VALIDATION.recordSignatureVerification();
+        return StringUtil.verifyECDSASignature(sender.getKey(), getSignatureData(), signature);
     }
 
     public boolean processTransaction() throws TransactionException {
+        final UTXOSet utxoSet = UTXOSet.getInstance();
+        if (!prepare(utxoSet, sequence.incrementAndGet())) {
+            return false;
+        }
+
+        // add outputs to UTXOs
+        for (TransactionOutput transactionOutput : outputs) {
+            utxoSet.add(transactionOutput.getId(), transactionOutput);
+        }
+        // remove transaction inputs from UTXO lists
+        for (TransactionInput transactionInput : inputs) {
+            if (transactionInput.getUTXO() != null) {
+                utxoSet.remove(transactionInput.getUTXO().getId());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks the signature, resolves the inputs and creates the outputs without changing the {@link UTXOSet}.
+     * Preparing again discards the outputs of the previous call.
+     *
+     * @param utxos    unspent outputs the inputs are resolved against
+     * @param sequence sequence number of the transaction, see {@link #reserveSequence(int)}
+     * @return false if the inputs are worth less than {@link #MINIMUM_TRANSACTION}
+     */
+    public boolean prepare(final UTXOLookup utxos, final int sequence) throws TransactionException {
         if (!verifySignature()) {
             throw new TransactionException(ErrorMessage.SIGNATURE_ERROR);
         }
+        outputs.clear();
         // gather unspent outputs
-        UTXOSet utxoSet = UTXOSet.getInstance();
         for (TransactionInput transactionInput : this.inputs) {
-            transactionInput.setUTXO(utxoSet.get(transactionInput.getTransactionOutputId()));
+            transactionInput.setUTXO(utxos.get(transactionInput.getTransactionOutputId()));
         }
 
         // check if transaction is valid
         if (getInputsValue() < MINIMUM_TRANSACTION) {
-            System.out.println("#Transaction Inputs to small: " + getInputsValue());
+            logger.warn("Transaction inputs too small: {}", getInputsValue());
             return false;
         }
 
         // generate transaction outputs
         float leftOver = getInputsValue() - value;
-        this.transactionId = calculateHash();
+        this.transactionId = calculateHash(sequence);
         outputs.add(new TransactionOutput(this.recipient, value, transactionId)); // first output
         outputs.add(new TransactionOutput(this.sender, leftOver, transactionId)); // second output
-
-        // add outputs to UTXOs
-        for (TransactionOutput transactionOutput : outputs) {
-//            UTXOSet.getInstance().add(transactionOutput.getId(), transactionOutput);
-            utxoSet.add(transactionOutput.getId(), transactionOutput);
-        }
-        // remove transaction inputs from UTXO lists
-        for (TransactionInput transactionInput : inputs) {
-            if (transactionInput.getUTXO() != null) {
-                utxoSet.remove(transactionInput.getUTXO().getId());
-            }
-        }
         return true;
     }
 
@@ -1,15 +1,17 @@
 package com.liquiduspro.domain.transaction;
 
+import com.liquiduspro.util.Hash;
+
 /**
  * This class will be used to reference TransactionOutputs that have not yet been spent.
  * <br>
  * The transactionOutputId will be used to find the relevant TransactionOutput, allowing miners to check your ownership.
  */
 public class TransactionInput {
-    private final String transactionOutputId; // the id of the output that's being spent
+    private final Hash transactionOutputId; // the id of the output that's being spent
     private TransactionOutput UTXO; // contains the unspent transaction output
 
-    public TransactionInput(String transactionOutputId) {
+    public TransactionInput(Hash transactionOutputId) {
         this.transactionOutputId = transactionOutputId;
     }
 
@@ -21,7 +23,7 @@ public class TransactionInput {
         this.UTXO = UTXO;
     }
 
-    public String getTransactionOutputId() {
+    public Hash getTransactionOutputId() {
         return transactionOutputId;
     }
 }
@@ -1,5 +1,8 @@
 package com.liquiduspro.domain.transaction;
 
+import com.liquiduspro.crypto.KeyHandle;
+import com.liquiduspro.crypto.KeyRegistry;
+import com.liquiduspro.util.Hash;
 import com.liquiduspro.util.StringUtil;
 
 import java.security.PublicKey;
@@ -7,18 +10,43 @@ import java.util.Objects;
 
 public class TransactionOutput {
     private final float value; // the amount of coins they own
-    private final String parentTransactionId; // the transaction that created these coins
-    private transient final PublicKey recipient; // new owner of these coins
-    private String id;
+    private final Hash parentTransactionId; // the transaction that created these coins
+    private transient final KeyHandle recipient; // new owner of these coins
+    private Hash id;
 
-    public TransactionOutput(PublicKey recipient, float value, String parentTransactionId) {
+    public TransactionOutput(PublicKey recipient, float value, Hash parentTransactionId) {
+        this(KeyRegistry.getInstance().intern(recipient), value, parentTransactionId);
+    }
+
+    TransactionOutput(KeyHandle recipient, float value, Hash parentTransactionId) {
+        this.recipient = recipient;
+        this.value = value;
+        this.parentTransactionId = parentTransactionId;
+        this.id = calculateId(recipient, value, parentTransactionId);
+    }
+
+    // restores an output with a known id without rehashing it
+    public TransactionOutput(KeyHandle recipient, float value, Hash parentTransactionId, Hash id) {
         this.recipient = recipient;
         this.value = value;
         this.parentTransactionId = parentTransactionId;
-        this.id = StringUtil.applySha256(StringUtil.getStringFromKey(recipient) + value + parentTransactionId);
+        this.id = id;
     }
 
-    public String getParentTransactionId() {
+    // id of the output with the given recipient, value and parent, as computed when it is created
+    public static Hash calculateId(KeyHandle recipient, float value, Hash parentTransactionId) {
+        return StringUtil.sha256(recipient.getEncodedString() + value + parentTransactionId);
+    }
+
+    public PublicKey getRecipient() {
+        return recipient == null ? null : recipient.getKey();
+    }
+
+    public KeyHandle getRecipientHandle() {
+        return recipient;
+    }
+
+    public Hash getParentTransactionId() {
         return parentTransactionId;
     }
 
@@ -26,25 +54,30 @@ public class TransactionOutput {
         return value;
     }
 
-    public String getId() {
+    public Hash getId() {
         return id;
     }
 
-    public void setId(String id) {
+    public void setId(Hash id) {
         this.id = id;
     }
 
+    // any instance of the recipient's key matches, they intern to the same handle
     public boolean isMine(final PublicKey publicKey) {
-        return publicKey == recipient;
+        return isMine(KeyRegistry.getInstance().intern(publicKey));
+    }
+
+    public boolean isMine(final KeyHandle key) {
+        return key == recipient;
     }
 
     @Override
     public String toString() {
         return "TransactionOutput{" +
                 "value=" + value +
-                ", parentTransactionId='" + parentTransactionId + '\'' +
+                ", parentTransactionId=" + parentTransactionId +
                 ", recipient=" + recipient +
-                ", id='" + id + '\'' +
+                ", id=" + id +
                 '}';
     }
 
@@ -0,0 +1,19 @@
+package com.liquiduspro.domain.transaction;
+
+import com.liquiduspro.util.Hash;
+import com.liquiduspro.util.TransactionException;
+
+/**
+ * Source of unspent outputs a {@link Transaction} is {@link Transaction#prepare prepared} against,
+ * e.g. the {@link com.liquiduspro.singleton.UTXOSet} or a view of it that hides outputs spent earlier in a block.
+ *
+ * @author econlq
+ */
+@FunctionalInterface
+public interface UTXOLookup {
+
+    /**
+     * @throws TransactionException if there is no unspent output with the given id
+     */
+    TransactionOutput get(Hash id) throws TransactionException;
+}
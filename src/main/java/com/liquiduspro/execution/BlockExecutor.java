@@ -0,0 +1,228 @@
+package com.liquiduspro.execution;
+
+import com.liquiduspro.domain.transaction.Transaction;
+import com.liquiduspro.domain.transaction.TransactionInput;
+import com.liquiduspro.domain.transaction.TransactionOutput;
+import com.liquiduspro.domain.transaction.UTXOLookup;
+import com.liquiduspro.singleton.UTXOSet;
+import com.liquiduspro.util.Constants;
+import com.liquiduspro.util.ErrorMessage;
+import com.liquiduspro.util.Hash;
+import com.liquiduspro.util.TransactionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Applies the transactions of a block to the {@link UTXOSet} with independent transactions processed in parallel.
+ * <br>
+ * Transactions spending a common output are linked in a conflict graph. Each connected group is prepared in block
+ * order on one worker, so the first valid spender of an output wins as with {@link Transaction#processTransaction()},
+ * while different groups run on different workers. Preparing reads the set without changing it, the changes of all
+ * valid transactions are then {@link UTXOSet#apply(UTXOBatch) applied} as one batch, prepared again if another writer
+ * spent an input meanwhile. A block of independent payments costs about one signature check per worker.
+ * Blocks with fewer than {@link #MIN_PARALLEL} transactions are prepared on the calling thread.
+ *
+ * @author econlq
+ */
+public final class BlockExecutor implements AutoCloseable {
+    public static final int MIN_PARALLEL = 8;
+    private static final Logger logger = LoggerFactory.getLogger(BlockExecutor.class);
+    // preparing again when another writer spent an input between preparing and applying
+    private static final int MAX_ATTEMPTS = 3;
+    private static final BlockExecutor INSTANCE = new BlockExecutor(Constants.AVAILABLE_PROCESSORS);
+    private final int workers;
+    private final ExecutorService executor;
+
+    public BlockExecutor(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Number of workers must be positive: " + workers);
+        }
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.workers = workers;
+        this.executor = Executors.newFixedThreadPool(workers, runnable -> {
+            final Thread thread = new Thread(runnable, "block-executor-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // shared executor with one worker per available processor
+    public static BlockExecutor getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Prepares the transactions and applies the changes of the valid ones to the {@link UTXOSet} at once.
+     *
+     * @return which transactions were applied
+     * @throws TransactionException if the set kept changing underneath on every attempt,
+     *                              nothing is applied then and the transactions can be executed again
+     */
+    public Result execute(final List<Transaction> transactions) {
+        final int[][] groups = conflictGroups(transactions);
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            final boolean[] applied = new boolean[transactions.size()];
+            prepare(transactions, groups, Transaction.reserveSequence(transactions.size()), applied);
+            final UTXOBatch batch = new UTXOBatch();
+            for (int i = 0; i < applied.length; i++) {
+                if (!applied[i]) continue;
+                final Transaction transaction = transactions.get(i);
+                for (TransactionInput input : transaction.getInputs()) {
+                    batch.spend(input.getUTXO());
+                }
+                for (TransactionOutput output : transaction.getOutputs()) {
+                    batch.create(output);
+                }
+            }
+            if (UTXOSet.getInstance().apply(batch)) {
+                return new Result(applied, batch);
+            }
+            logger.warn("UTXOSet changed while executing block, attempt {} of {}", attempt, MAX_ATTEMPTS);
+        }
+        throw new TransactionException(ErrorMessage.UTXO_SET_CONTENDED);
+    }
+
+    /**
+     * Connected components of the transactions sharing an input, as transaction positions in block order.
+     */
+    static int[][] conflictGroups(final List<Transaction> transactions) {
+        final int size = transactions.size();
+        final int[] parent = new int[size];
+        final Map<Hash, Integer> firstSpender = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            parent[i] = i;
+            for (TransactionInput input : transactions.get(i).getInputs()) {
+                final Integer spender = firstSpender.putIfAbsent(input.getTransactionOutputId(), i);
+                if (spender != null) {
+                    union(parent, spender, i);
+                }
+            }
+        }
+        final Map<Integer, List<Integer>> members = new HashMap<>();
+        final List<List<Integer>> ordered = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            members.computeIfAbsent(find(parent, i), root -> {
+                final List<Integer> group = new ArrayList<>();
+                ordered.add(group);
+                return group;
+            }).add(i);
+        }
+        final int[][] groups = new int[ordered.size()][];
+        for (int g = 0; g < groups.length; g++) {
+            groups[g] = ordered.get(g).stream().mapToInt(Integer::intValue).toArray();
+        }
+        return groups;
+    }
+
+    private static int find(final int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]]; // path halving
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(final int[] parent, final int a, final int b) {
+        final int rootA = find(parent, a);
+        final int rootB = find(parent, b);
+        // the earlier transaction stays the root
+        if (rootA < rootB) {
+            parent[rootB] = rootA;
+        } else if (rootB < rootA) {
+            parent[rootA] = rootB;
+        }
+    }
+
+    private void prepare(final List<Transaction> transactions, final int[][] groups, final int firstSequence,
+                         final boolean[] applied) {
+        final int tasks = Math.min(workers, transactions.size() / MIN_PARALLEL);
+        if (tasks <= 1) {
+            for (int[] group : groups) {
+                prepareGroup(transactions, group, firstSequence, applied);
+            }
+            return;
+        }
+        // workers take the next group until none are left
+        final AtomicInteger next = new AtomicInteger();
+        final List<Callable<Void>> workerTasks = new ArrayList<>(tasks);
+        for (int t = 0; t < tasks; t++) {
+            workerTasks.add(() -> {
+                for (int g = next.getAndIncrement(); g < groups.length; g = next.getAndIncrement()) {
+                    prepareGroup(transactions, groups[g], firstSequence, applied);
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : executor.invokeAll(workerTasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            logger.warn("Error while executing block: {}", e.getCause().toString());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    // prepares one group in block order, outputs spent by an earlier transaction of the group are gone
+    private static void prepareGroup(final List<Transaction> transactions, final int[] group, final int firstSequence,
+                                     final boolean[] applied) {
+        final UTXOSet utxoSet = UTXOSet.getInstance();
+        final Set<Hash> spent = group.length > 1 ? new HashSet<>() : Set.of();
+        final UTXOLookup unspent = id -> {
+            if (spent.contains(id)) {
+                throw new TransactionException(ErrorMessage.UTXO_NOT_FOUND);
+            }
+            return utxoSet.get(id);
+        };
+        for (int index : group) {
+            final Transaction transaction = transactions.get(index);
+            if (transaction.getValue() < 0) {
+                logger.warn(ErrorMessage.INVALID_TRANSACTION_VALUE);
+                continue;
+            }
+            try {
+                if (!transaction.prepare(unspent, firstSequence + index)) {
+                    logger.warn(ErrorMessage.INVALID_TRANSACTION);
+                    continue;
+                }
+            } catch (TransactionException e) {
+                logger.warn(e.getMessage());
+                continue;
+            }
+            applied[index] = true;
+            if (group.length > 1) {
+                for (TransactionInput input : transaction.getInputs()) {
+                    spent.add(input.getTransactionOutputId());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * @param applied for every transaction, in block order, whether it was applied
+     * @param batch   the changes made to the {@link UTXOSet}
+     */
+    public record Result(boolean[] applied, UTXOBatch batch) {
+    }
+}
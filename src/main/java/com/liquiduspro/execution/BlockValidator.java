@@ -0,0 +1,188 @@
+package com.liquiduspro.execution;
+
+import com.liquiduspro.crypto.BatchSignatureVerifier;
+import com.liquiduspro.crypto.KeyHandle;
+import com.liquiduspro.domain.Block;
+import com.liquiduspro.domain.transaction.Transaction;
+import com.liquiduspro.domain.transaction.TransactionInput;
+import com.liquiduspro.domain.transaction.TransactionOutput;
+import com.liquiduspro.domain.transaction.UTXOLookup;
+import com.liquiduspro.util.Constants;
+import com.liquiduspro.util.Hash;
+import com.liquiduspro.util.TransactionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks a block this node did not build itself, e.g. one received from a peer or read from an export, before its
+ * {@link UTXOBatch#of(Block) changes} are applied:
+ * <ul>
+ *     <li>header: hash, proof-of-work and the merkle root recomputed from the transactions</li>
+ *     <li>signatures of all transactions</li>
+ *     <li>transactions in block order against the unspent outputs, as {@link Transaction#prepare} would have
+ *     produced them: every input resolves to the same output in the set, owned by the sender and not spent earlier
+ *     in the block, and the two outputs pay the value to the recipient and the change back to the sender,
+ *     with their ids recomputed</li>
+ * </ul>
+ * The genesis block mints its coins, only the signatures and output ids of its transactions are checked.
+ *
+ * @author econlq
+ */
+public final class BlockValidator {
+    private static final Logger logger = LoggerFactory.getLogger(BlockValidator.class);
+    // caps the work of a single block, so cumulative work of a long chain still fits a long
+    private static final int MAX_WORK_BITS = 40;
+    private static final BlockValidator INSTANCE = new BlockValidator(Constants.DIFFICULTY);
+    private final int difficulty;
+
+    /**
+     * @param difficulty the number of leading hex 0's every block hash must have
+     */
+    public BlockValidator(int difficulty) {
+        this.difficulty = difficulty;
+    }
+
+    // validator for the difficulty of the chain
+    public static BlockValidator getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Proof-of-work every valid block adds to its chain, {@code 16^d} for the required {@code d} leading zero hex
+     * digits. It does not depend on how many zeros a hash happens to reach, so a branch needs more blocks to win.
+     */
+    public long getBlockWork() {
+        return 1L << Math.min(4 * difficulty, MAX_WORK_BITS);
+    }
+
+    /**
+     * Checks the header and all transactions of the block.
+     *
+     * @param utxos   unspent outputs before the block
+     * @param genesis whether the block is the first block of the chain
+     */
+    public boolean isValid(final Block block, final UTXOLookup utxos, final boolean genesis) {
+        return isValidHeader(block)
+                && hasValidSignatures(block)
+                && hasValidTransactions(block, utxos, genesis);
+    }
+
+    // hash, proof-of-work and merkle root, independent of the chain state
+    public boolean isValidHeader(final Block block) {
+        final Hash hash = block.getHash();
+        if (hash == null || !hash.equals(block.calculateHash())) {
+            logger.warn("Block {} has an invalid hash", hash);
+            return false;
+        }
+        if (!hash.meetsDifficulty(difficulty)) {
+            logger.warn("Block {} hasn't been mined", hash);
+            return false;
+        }
+        if (!block.getMerkleTree().getRoot().equals(block.getMerkleRoot())) {
+            logger.warn("Block {} has an invalid merkle root: {}", hash, block.getMerkleRoot());
+            return false;
+        }
+        return true;
+    }
+
+    public boolean hasValidSignatures(final Block block) {
+        for (Transaction transaction : block.getTransactions()) {
+            if (transaction.getSenderHandle() == null || transaction.getSignature() == null) {
+                logger.warn("Block {} has an unsigned transaction", block.getHash());
+                return false;
+            }
+        }
+        if (!BatchSignatureVerifier.getInstance().verifyAll(block.getTransactions())) {
+            logger.warn("Block {} has an invalid signature", block.getHash());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks the inputs and outputs of the block's transactions in block order, signatures are not verified.
+     *
+     * @param utxos   unspent outputs before the block
+     * @param genesis whether the block is the first block of the chain
+     */
+    public boolean hasValidTransactions(final Block block, final UTXOLookup utxos, final boolean genesis) {
+        // outputs spent by earlier transactions of the block
+        final Set<Hash> spent = new HashSet<>();
+        for (Transaction transaction : block.getTransactions()) {
+            final String error = genesis ? checkOutputIds(transaction) : check(transaction, utxos, spent);
+            if (error != null) {
+                logger.warn("Block {} has an invalid transaction {}: {}", block.getHash(), transaction.getTransactionId(), error);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // reason the transaction is invalid, or null if it is valid
+    private static String check(final Transaction transaction, final UTXOLookup utxos, final Set<Hash> spent) {
+        if (transaction.getInputs().isEmpty()) {
+            return "no inputs";
+        }
+        float inputsValue = 0;
+        for (TransactionInput input : transaction.getInputs()) {
+            final TransactionOutput embedded = input.getUTXO();
+            if (embedded == null || !input.getTransactionOutputId().equals(embedded.getId())) {
+                return "input does not carry its output";
+            }
+            if (!spent.add(embedded.getId())) {
+                return "output spent twice";
+            }
+            final TransactionOutput unspent;
+            try {
+                unspent = utxos.get(embedded.getId());
+            } catch (TransactionException e) {
+                return "output is not unspent";
+            }
+            if (unspent.getValue() != embedded.getValue() || !unspent.isMine(embedded.getRecipientHandle())) {
+                return "input value or recipient differs from the unspent output";
+            }
+            if (!unspent.isMine(transaction.getSenderHandle())) {
+                return "input is not owned by the sender";
+            }
+            inputsValue += embedded.getValue();
+        }
+        if (inputsValue < Transaction.MINIMUM_TRANSACTION) {
+            return "inputs too small";
+        }
+        // same outputs as Transaction.prepare
+        final float leftOver = inputsValue - transaction.getValue();
+        final List<TransactionOutput> outputs = transaction.getOutputs();
+        if (transaction.getValue() < 0 || leftOver < 0 || outputs.size() != 2) {
+            return "outputs do not match the inputs";
+        }
+        if (!isOutput(outputs.get(0), transaction.getRecipientHandle(), transaction.getValue())
+                || !isOutput(outputs.get(1), transaction.getSenderHandle(), leftOver)) {
+            return "outputs do not pay the recipient and the sender";
+        }
+        return checkOutputIds(transaction);
+    }
+
+    private static boolean isOutput(final TransactionOutput output, final KeyHandle recipient, final float value) {
+        return output.isMine(recipient) && output.getValue() == value;
+    }
+
+    private static String checkOutputIds(final Transaction transaction) {
+        final Hash transactionId = transaction.getTransactionId();
+        if (transactionId == null) {
+            return "no transaction id";
+        }
+        for (TransactionOutput output : transaction.getOutputs()) {
+            if (output.getRecipientHandle() == null
+                    || !transactionId.equals(output.getParentTransactionId())
+                    || !output.getId().equals(TransactionOutput.calculateId(
+                    output.getRecipientHandle(), output.getValue(), transactionId))) {
+                return "invalid output id";
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,292 @@
+package com.liquiduspro.execution;
+
+import com.liquiduspro.crypto.BatchSignatureVerifier;
+import com.liquiduspro.domain.Block;
+import com.liquiduspro.domain.transaction.Transaction;
+import com.liquiduspro.singleton.Blockchain;
+import com.liquiduspro.storage.BlockCodec;
+import com.liquiduspro.storage.BlockReader;
+import com.liquiduspro.storage.BlockWriter;
+import com.liquiduspro.util.Constants;
+import com.liquiduspro.util.Hash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Imports a stream of blocks written by a {@link BlockWriter} through a pipeline of stages on their own threads,
+ * connected by bounded queues:
+ * <ol>
+ *     <li>decode: reads and decodes the records</li>
+ *     <li>check: hash, proof-of-work and merkle root of every block, see {@link BlockValidator#isValidHeader(Block)}</li>
+ *     <li>signatures: verifies the transactions of the queued blocks as one {@link BatchSignatureVerifier batch}</li>
+ *     <li>apply: on the calling thread, adds every block extending the tip with
+ *     {@link Blockchain#acceptBlock(Block, boolean)}, which validates its transactions against the UTXO set left by
+ *     the earlier blocks and applies its {@link UTXOBatch#of(Block) changes} at once. Only the first block of an
+ *     empty chain may mint coins.</li>
+ * </ol>
+ * The apply stage only does the sequential part, the CPU-bound hashing and signature checks of later blocks run
+ * while earlier blocks are applied. The import stops at the first invalid block, the blocks before it stay imported.
+ * The {@link ImportReport} shows the throughput of every stage and how long it waited for its neighbours.
+ * <br>
+ * Reindex a chain into a fresh store with {@code BulkImporter <export file> <data dir>}.
+ *
+ * @author econlq
+ */
+public final class BulkImporter {
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+    private static final Logger logger = LoggerFactory.getLogger(BulkImporter.class);
+    // the queued blocks are verified together until they add up to this many transactions
+    private static final int SIGNATURE_BATCH = 256;
+    private static final long POLL_MILLIS = 10;
+    // end of the stream, passed down the pipeline
+    private static final Block END = new Block(Hash.ZERO, 0, 0, null, null, List.of());
+    private final Blockchain blockchain;
+    private final BlockValidator validator;
+    private final int queueCapacity;
+
+    public BulkImporter() {
+        this(Blockchain.getInstance(), Constants.DIFFICULTY, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param difficulty    the number of leading hex 0's every block hash must have
+     * @param queueCapacity blocks buffered between two stages
+     */
+    public BulkImporter(Blockchain blockchain, int difficulty, int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+        }
+        this.blockchain = blockchain;
+        this.validator = new BlockValidator(difficulty);
+        this.queueCapacity = queueCapacity;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: BulkImporter <export file> [data dir]");
+            return;
+        }
+        if (args.length > 1) {
+            Blockchain.getInstance().open(Path.of(args[1]));
+        }
+        try (FileChannel channel = FileChannel.open(Path.of(args[0]), StandardOpenOption.READ)) {
+            System.out.print(new BulkImporter().importFrom(channel).format());
+        }
+    }
+
+    public ImportReport importFrom(final ReadableByteChannel channel) throws IOException {
+        final long start = System.nanoTime();
+        final BlockReader reader = new BlockReader(channel);
+        final Pipeline pipeline = new Pipeline();
+        final BlockingQueue<Block> decoded = new ArrayBlockingQueue<>(queueCapacity);
+        final BlockingQueue<Block> checked = new ArrayBlockingQueue<>(queueCapacity);
+        final BlockingQueue<Block> verified = new ArrayBlockingQueue<>(queueCapacity);
+        final Stage decode = new Stage("decode");
+        final Stage check = new Stage("check");
+        final Stage signatures = new Stage("signatures");
+        final Stage apply = new Stage("apply");
+        final List<Thread> threads = List.of(
+                pipeline.start("import-decode", () -> decode(reader, decoded, decode, pipeline)),
+                pipeline.start("import-check", () -> check(decoded, checked, check, pipeline)),
+                pipeline.start("import-signatures", () -> verify(checked, verified, signatures, pipeline)));
+        long transactions = 0;
+        try {
+            for (Block block = pipeline.take(verified, apply); block != END; block = pipeline.take(verified, apply)) {
+                final long applyStart = System.nanoTime();
+                final boolean added = block.getPreviousHash().equals(blockchain.getLatestBlockHash())
+                        && blockchain.acceptBlock(block, true);
+                apply.busyNanos += System.nanoTime() - applyStart;
+                if (!added) {
+                    logger.warn("Block {} does not extend the chain or is invalid, stopping the import", block.getHash());
+                    pipeline.invalid.set(true);
+                    break;
+                }
+                apply.blocks++;
+                transactions += block.getTransactions().size();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pipeline.fail(e);
+        } finally {
+            pipeline.stopped.set(true);
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        final Throwable error = pipeline.error.get();
+        if (error instanceof IOException e) {
+            throw e;
+        } else if (error instanceof RuntimeException e) {
+            throw e;
+        } else if (error != null) {
+            throw new RuntimeException(error);
+        }
+        return new ImportReport((int) apply.blocks, transactions, !pipeline.invalid.get(), System.nanoTime() - start,
+                List.of(decode.report(), check.report(), signatures.report(), apply.report()));
+    }
+
+    private void decode(final BlockReader reader, final BlockingQueue<Block> out, final Stage stage,
+                        final Pipeline pipeline) throws IOException, InterruptedException {
+        while (true) {
+            final long start = System.nanoTime();
+            final ByteBuffer record = reader.readRecord();
+            final Block block = record == null ? END : BlockCodec.decode(record);
+            stage.busyNanos += System.nanoTime() - start;
+            if (!pipeline.put(out, block, stage) || block == END) return;
+            stage.blocks++;
+        }
+    }
+
+    private void check(final BlockingQueue<Block> in, final BlockingQueue<Block> out, final Stage stage,
+                       final Pipeline pipeline) throws InterruptedException {
+        for (Block block = pipeline.take(in, stage); block != END; block = pipeline.take(in, stage)) {
+            final long start = System.nanoTime();
+            final boolean valid = validator.isValidHeader(block);
+            stage.busyNanos += System.nanoTime() - start;
+            if (!valid) {
+                logger.warn("Block {} has an invalid header, stopping the import", block.getHash());
+                pipeline.invalid.set(true);
+                break;
+            }
+            if (!pipeline.put(out, block, stage)) return;
+            stage.blocks++;
+        }
+        pipeline.put(out, END, stage);
+    }
+
+    // verifies the signatures of as many queued blocks as make up a batch at once
+    private void verify(final BlockingQueue<Block> in, final BlockingQueue<Block> out, final Stage stage,
+                        final Pipeline pipeline) throws InterruptedException {
+        final List<Block> blocks = new ArrayList<>();
+        final List<Transaction> transactions = new ArrayList<>();
+        boolean end = false;
+        while (!end) {
+            for (Block block = pipeline.take(in, stage); ; block = in.poll()) {
+                if (block == null) break;
+                if (block == END) {
+                    end = true;
+                    break;
+                }
+                blocks.add(block);
+                transactions.addAll(block.getTransactions());
+                if (transactions.size() >= SIGNATURE_BATCH) break;
+            }
+            final long start = System.nanoTime();
+            final boolean[] results = BatchSignatureVerifier.getInstance().verify(transactions);
+            stage.busyNanos += System.nanoTime() - start;
+            int position = 0;
+            for (Block block : blocks) {
+                for (int i = 0; i < block.getTransactions().size(); i++) {
+                    if (!results[position++]) {
+                        logger.warn("Block {} has an invalid signature, stopping the import", block.getHash());
+                        pipeline.invalid.set(true);
+                        pipeline.put(out, END, stage);
+                        return;
+                    }
+                }
+                if (!pipeline.put(out, block, stage)) return;
+                stage.blocks++;
+            }
+            blocks.clear();
+            transactions.clear();
+        }
+        pipeline.put(out, END, stage);
+    }
+
+    // state shared by the stages of one import
+    private static final class Pipeline {
+        // set once the import ends early, stages then stop at their next queue operation
+        final AtomicBoolean stopped = new AtomicBoolean();
+        final AtomicBoolean invalid = new AtomicBoolean();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        Thread start(final String name, final StageTask task) {
+            final Thread thread = new Thread(() -> {
+                try {
+                    task.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    fail(e);
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Error while importing blocks: {}", e.toString());
+                    fail(e);
+                }
+            }, name);
+            thread.setDaemon(true);
+            thread.start();
+            return thread;
+        }
+
+        void fail(final Throwable e) {
+            error.compareAndSet(null, e);
+            stopped.set(true);
+        }
+
+        // next block or END if the import was stopped
+        Block take(final BlockingQueue<Block> queue, final Stage stage) throws InterruptedException {
+            final long start = System.nanoTime();
+            try {
+                while (!stopped.get()) {
+                    final Block block = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (block != null) return block;
+                }
+                return END;
+            } finally {
+                stage.inputWaitNanos += System.nanoTime() - start;
+            }
+        }
+
+        // false if the import was stopped before the queue had room
+        boolean put(final BlockingQueue<Block> queue, final Block block, final Stage stage) throws InterruptedException {
+            final long start = System.nanoTime();
+            try {
+                while (!stopped.get()) {
+                    if (queue.offer(block, POLL_MILLIS, TimeUnit.MILLISECONDS)) return true;
+                }
+                return false;
+            } finally {
+                stage.outputWaitNanos += System.nanoTime() - start;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface StageTask {
+        void run() throws IOException, InterruptedException;
+    }
+
+    // counters of one stage, only written by its thread and read after it ended
+    private static final class Stage {
+        final String name;
+        long blocks;
+        long busyNanos;
+        long inputWaitNanos;
+        long outputWaitNanos;
+
+        Stage(final String name) {
+            this.name = name;
+        }
+
+        ImportReport.Stage report() {
+            return new ImportReport.Stage(name, blocks, busyNanos, inputWaitNanos, outputWaitNanos);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.liquiduspro.execution;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Outcome of a {@link BulkImporter} run.
+ *
+ * @param imported     blocks added to the chain
+ * @param transactions transactions of the added blocks
+ * @param complete     true if the whole stream was imported, false if it stopped at an invalid block
+ * @param elapsedNanos wall clock time of the import
+ * @param stages       work per pipeline stage, in pipeline order
+ * @author econlq
+ */
+public record ImportReport(int imported, long transactions, boolean complete, long elapsedNanos,
+                           List<Stage> stages) {
+
+    public double blocksPerSecond() {
+        return elapsedNanos == 0 ? 0 : imported * 1e9 / elapsedNanos;
+    }
+
+    public double transactionsPerSecond() {
+        return elapsedNanos == 0 ? 0 : transactions * 1e9 / elapsedNanos;
+    }
+
+    public String format() {
+        final StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "imported %d blocks, %d transactions%s in %.1f ms%n",
+                imported, transactions, complete ? "" : " (stopped at an invalid block)", elapsedNanos / 1e6));
+        out.append(String.format(Locale.ROOT, "sustained %.1f blocks/s, %.1f tx/s%n",
+                blocksPerSecond(), transactionsPerSecond()));
+        for (Stage stage : stages) {
+            out.append(String.format(Locale.ROOT, "%-10s %8d blocks %10.1f blocks/s busy %10.1f ms, waiting for input %10.1f ms, output %10.1f ms%n",
+                    stage.name(), stage.blocks(), stage.blocksPerSecond(), stage.busyNanos() / 1e6,
+                    stage.inputWaitNanos() / 1e6, stage.outputWaitNanos() / 1e6));
+        }
+        return out.toString();
+    }
+
+    /**
+     * @param name            stage name
+     * @param blocks          blocks the stage passed on
+     * @param busyNanos       time spent working
+     * @param inputWaitNanos  time spent waiting for the previous stage
+     * @param outputWaitNanos time spent waiting for room in the queue of the next stage
+     */
+    public record Stage(String name, long blocks, long busyNanos, long inputWaitNanos, long outputWaitNanos) {
+
+        // throughput while busy, what the stage could sustain on its own
+        public double blocksPerSecond() {
+            return busyNanos == 0 ? 0 : blocks * 1e9 / busyNanos;
+        }
+    }
+}
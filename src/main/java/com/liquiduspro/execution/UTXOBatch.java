@@ -0,0 +1,65 @@
+package com.liquiduspro.execution;
+
+import com.liquiduspro.domain.Block;
+import com.liquiduspro.domain.transaction.Transaction;
+import com.liquiduspro.domain.transaction.TransactionInput;
+import com.liquiduspro.domain.transaction.TransactionOutput;
+import com.liquiduspro.util.Hash;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Changes of a block to the {@link com.liquiduspro.singleton.UTXOSet}: the outputs it spends and the ones it creates.
+ * Applied as one unit by {@link com.liquiduspro.singleton.UTXOSet#apply(UTXOBatch)} and undone by
+ * {@link com.liquiduspro.singleton.UTXOSet#revert(UTXOBatch)}, the spent outputs are kept whole for that.
+ * A processed block carries its own undo data, see {@link #of(Block)}.
+ *
+ * @author econlq
+ */
+public final class UTXOBatch {
+    private final List<TransactionOutput> spent = new ArrayList<>();
+    private final List<TransactionOutput> created = new ArrayList<>();
+
+    /**
+     * Changes of an already processed block: the outputs resolved by its inputs and the outputs it created.
+     * Both are stored with the block, so a block read back from a store can be reverted as well.
+     * The genesis block mints its coins, the outputs of its inputs were never in the set and are not spent.
+     */
+    public static UTXOBatch of(final Block block) {
+        final UTXOBatch batch = new UTXOBatch();
+        final boolean genesis = Hash.ZERO.equals(block.getPreviousHash());
+        for (Transaction transaction : block.getTransactions()) {
+            for (TransactionInput input : transaction.getInputs()) {
+                if (!genesis && input.getUTXO() != null) {
+                    batch.spend(input.getUTXO());
+                }
+            }
+            for (TransactionOutput output : transaction.getOutputs()) {
+                batch.create(output);
+            }
+        }
+        return batch;
+    }
+
+    public void spend(final TransactionOutput output) {
+        spent.add(output);
+    }
+
+    public void create(final TransactionOutput output) {
+        created.add(output);
+    }
+
+    public List<TransactionOutput> getSpent() {
+        return Collections.unmodifiableList(spent);
+    }
+
+    public List<TransactionOutput> getCreated() {
+        return Collections.unmodifiableList(created);
+    }
+
+    public boolean isEmpty() {
+        return spent.isEmpty() && created.isEmpty();
+    }
+}
@@ -0,0 +1,36 @@
+package com.liquiduspro.load;
+
+/**
+ * Settings of a {@link LoadGenerator} run, read from {@code noobchain.load.*} system properties.
+ *
+ * @param wallets      number of funded wallets sending to each other
+ * @param clients      number of concurrent clients, every wallet belongs to exactly one client
+ * @param transactions number of transfers in the generated workload
+ * @param seed         seed of the generated workload
+ * @param blockSize    maximum number of transactions per mined block
+ * @param difficulty   proof-of-work difficulty of the mined blocks
+ * @param maxAmount    upper bound of a generated transfer amount
+ * @author econlq
+ */
+public record LoadConfig(int wallets, int clients, int transactions, long seed, int blockSize, int difficulty,
+                         float maxAmount) {
+
+    public LoadConfig {
+        if (wallets < 2 || clients < 1 || transactions < 0 || blockSize < 1 || difficulty < 0 || maxAmount <= 0) {
+            throw new IllegalArgumentException("Invalid load configuration: wallets=" + wallets + ", clients=" + clients
+                    + ", transactions=" + transactions + ", blockSize=" + blockSize + ", difficulty=" + difficulty
+                    + ", maxAmount=" + maxAmount);
+        }
+    }
+
+    public static LoadConfig fromSystemProperties() {
+        return new LoadConfig(
+                Integer.getInteger("noobchain.load.wallets", 1000),
+                Integer.getInteger("noobchain.load.clients", 64),
+                Integer.getInteger("noobchain.load.transactions", 10_000),
+                Long.getLong("noobchain.load.seed", 42L),
+                Integer.getInteger("noobchain.load.blockSize", 500),
+                Integer.getInteger("noobchain.load.difficulty", 2),
+                Float.parseFloat(System.getProperty("noobchain.load.maxAmount", "5")));
+    }
+}
@@ -0,0 +1,329 @@
+package com.liquiduspro.load;
+
+import com.liquiduspro.domain.Block;
+import com.liquiduspro.domain.Wallet;
+import com.liquiduspro.domain.transaction.Transaction;
+import com.liquiduspro.domain.transaction.TransactionInput;
+import com.liquiduspro.domain.transaction.TransactionOutput;
+import com.liquiduspro.mempool.Mempool;
+import com.liquiduspro.mempool.Priority;
+import com.liquiduspro.metrics.LatencyHistogram;
+import com.liquiduspro.singleton.Blockchain;
+import com.liquiduspro.singleton.UTXOSet;
+import com.liquiduspro.util.Hash;
+import com.liquiduspro.util.TransactionException;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a {@link WorkloadTrace} of transfers between many wallets against the {@link Mempool} and the
+ * {@link Blockchain} from concurrent clients, and reports the sustained throughput, latencies and where the time went.
+ * <br>
+ * Every wallet belongs to one client (sender index modulo clients), a client signs and submits its transfers in trace
+ * order and waits for a wallet's pending transaction to be mined before that wallet sends again, like a user waiting
+ * for a confirmation. A single miner thread assembles blocks of up to {@link LoadConfig#blockSize()} transactions,
+ * or whatever is pending after {@link #MAX_BLOCK_INTERVAL_NANOS}.
+ * <br>
+ * Usage: {@code LoadGenerator [record <trace> | replay <trace>]}, settings are read by
+ * {@link LoadConfig#fromSystemProperties()}. The blockchain and UTXO set must be empty.
+ *
+ * @author econlq
+ */
+public final class LoadGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+    private static final float FUNDS_PER_WALLET = 100f;
+    private static final long MAX_BLOCK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    private final LoadConfig config;
+    private final Blockchain blockchain = Blockchain.getInstance();
+    private final Mempool mempool = new Mempool(Priority.ARRIVAL);
+    // transactions awaiting their block, Transaction has identity equality
+    private final Map<Transaction, Pending> inFlight = new ConcurrentHashMap<>();
+    private final LatencyHistogram submitLatency = new LatencyHistogram();
+    private final LatencyHistogram confirmationLatency = new LatencyHistogram();
+    private final Map<Phase, LongAdder> phaseNanos = new EnumMap<>(Phase.class);
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder confirmed = new LongAdder();
+    private final LongAdder insufficientFunds = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean clientsDone;
+    private long blocks;
+
+    public LoadGenerator(LoadConfig config) {
+        this.config = config;
+        for (Phase phase : Phase.values()) {
+            phaseNanos.put(phase, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) {
+        Security.addProvider(new BouncyCastleProvider());
+        final LoadConfig config = LoadConfig.fromSystemProperties();
+        final WorkloadTrace trace;
+        if (args.length == 2 && "replay".equals(args[0])) {
+            trace = WorkloadTrace.read(Path.of(args[1]));
+        } else {
+            trace = WorkloadTrace.generate(config.seed(), config.wallets(), config.transactions(), config.maxAmount());
+            if (args.length == 2 && "record".equals(args[0])) {
+                trace.write(Path.of(args[1]));
+            }
+        }
+        logger.warn("Running {} transfers between {} wallets: {}", trace.getTransfers().size(), trace.getWallets(), config);
+        System.out.print(new LoadGenerator(config).run(trace).format());
+    }
+
+    /**
+     * Creates and funds the trace's wallets, then runs its transfers to completion.
+     */
+    public LoadReport run(final WorkloadTrace trace) {
+        if (blockchain.size() != 0 || UTXOSet.getInstance().size() != 0) {
+            throw new IllegalStateException("Load generation needs an empty blockchain");
+        }
+        final AtomicInteger threadIds = new AtomicInteger();
+        // Java 17 has no virtual threads: one platform thread per client
+        final ExecutorService clients = Executors.newFixedThreadPool(config.clients(),
+                runnable -> new Thread(runnable, "load-client-" + threadIds.getAndIncrement()));
+        try {
+            final List<Wallet> wallets = createWallets(clients, trace.getWallets());
+            fund(wallets);
+
+            final List<Callable<Void>> tasks = new ArrayList<>(config.clients());
+            for (int client = 0; client < config.clients(); client++) {
+                final int id = client;
+                tasks.add(() -> {
+                    runClient(id, wallets, trace.getTransfers());
+                    return null;
+                });
+            }
+            final Thread miner = new Thread(this::runMiner, "load-miner");
+            final long start = System.nanoTime();
+            miner.start();
+            try {
+                awaitAll(clients.invokeAll(tasks));
+            } finally {
+                // the miner drains the mempool and stops
+                clientsDone = true;
+                miner.join();
+            }
+            final long elapsed = System.nanoTime() - start;
+
+            final Map<Phase, Long> phases = new EnumMap<>(Phase.class);
+            phaseNanos.forEach((phase, nanos) -> phases.put(phase, nanos.sum()));
+            return new LoadReport(trace.getTransfers().size(), submitted.sum(), confirmed.sum(),
+                    insufficientFunds.sum(), rejected.sum(), dropped.sum(), blocks, elapsed,
+                    submitLatency.snapshot(), confirmationLatency.snapshot(), phases);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private static List<Wallet> createWallets(final ExecutorService executor, final int count)
+            throws InterruptedException {
+        final List<Callable<Wallet>> tasks = Collections.nCopies(count, Wallet::new);
+        final List<Wallet> wallets = new ArrayList<>(count);
+        for (Future<Wallet> wallet : executor.invokeAll(tasks)) {
+            try {
+                wallets.add(wallet.get());
+            } catch (ExecutionException e) {
+                logger.warn("Error while creating wallet: {}", e.getCause().toString());
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        return wallets;
+    }
+
+    // genesis block with a single transaction paying every wallet, built like NoobChain's genesis transaction
+    private void fund(final List<Wallet> wallets) {
+        final Wallet faucet = new Wallet();
+        final float total = FUNDS_PER_WALLET * wallets.size();
+        final TransactionInput input = new TransactionInput(Hash.ZERO);
+        input.setUTXO(new TransactionOutput(faucet.getPublicKey(), total, input.getTransactionOutputId()));
+        final Transaction funding = new Transaction(faucet.getPublicKey(), faucet.getPublicKey(), total, List.of(input));
+        funding.generateSignature(faucet.getPrivateKey());
+        funding.setTransactionId(input.getTransactionOutputId());
+        final UTXOSet utxoSet = UTXOSet.getInstance();
+        for (Wallet wallet : wallets) {
+            final TransactionOutput output = new TransactionOutput(wallet.getPublicKey(), FUNDS_PER_WALLET, funding.getTransactionId());
+            funding.getOutputs().add(output);
+            utxoSet.add(output.getId(), output);
+        }
+        final Block genesis = new Block(Hash.ZERO);
+        genesis.addTransaction(funding);
+        genesis.mineBlock(config.difficulty());
+        blockchain.addBlock(genesis);
+    }
+
+    private void runClient(final int client, final List<Wallet> wallets, final List<WorkloadTrace.Transfer> transfers)
+            throws InterruptedException {
+        // last submitted transaction per wallet of this client
+        final Map<Integer, Pending> pendingBySender = new HashMap<>();
+        for (WorkloadTrace.Transfer transfer : transfers) {
+            if (transfer.sender() % config.clients() != client) continue;
+            final Pending previous = pendingBySender.remove(transfer.sender());
+            if (previous != null) {
+                final long waitStart = System.nanoTime();
+                previous.resolved.await();
+                phaseNanos.get(Phase.WAIT).add(System.nanoTime() - waitStart);
+            }
+
+            final long start = System.nanoTime();
+            final Transaction transaction;
+            try {
+                transaction = wallets.get(transfer.sender())
+                        .sendFunds(wallets.get(transfer.recipient()).getPublicKey(), transfer.amount());
+            } catch (TransactionException e) {
+                insufficientFunds.increment();
+                phaseNanos.get(Phase.SIGN).add(System.nanoTime() - start);
+                continue;
+            }
+            final long signed = System.nanoTime();
+            phaseNanos.get(Phase.SIGN).add(signed - start);
+
+            // registered before submitting, the miner may include it right away
+            final Pending pending = new Pending(signed);
+            inFlight.put(transaction, pending);
+            final boolean accepted = mempool.submit(transaction);
+            final long end = System.nanoTime();
+            phaseNanos.get(Phase.SUBMIT).add(end - signed);
+            submitLatency.record(end - start);
+            if (!accepted) {
+                inFlight.remove(transaction);
+                rejected.increment();
+                continue;
+            }
+            submitted.increment();
+            pending.submitted = true;
+            pendingBySender.put(transfer.sender(), pending);
+        }
+    }
+
+    private void runMiner() {
+        long lastBlock = System.nanoTime();
+        while (true) {
+            final boolean done = clientsDone;
+            final int size = mempool.size();
+            if (size == 0 && done) break;
+            if (size >= config.blockSize() || (size > 0 && (done || System.nanoTime() - lastBlock >= MAX_BLOCK_INTERVAL_NANOS))) {
+                if (mineBlock()) {
+                    lastBlock = System.nanoTime();
+                }
+            } else {
+                // a transaction the last block dropped before its client marked it submitted is resolved here
+                resolve(Set.of(), 0);
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    // false if no block could be assembled
+    private boolean mineBlock() {
+        final long start = System.nanoTime();
+        final Block block = mempool.assembleBlock(blockchain.getLatestBlockHash(), config.blockSize());
+        if (block == null) {
+            return false; // the UTXO set kept changing, the miner loop assembles the still pending transactions again
+        }
+        final long assembled = System.nanoTime();
+        block.mineBlock(config.difficulty());
+        final long mined = System.nanoTime();
+        blockchain.addBlock(block);
+        final long appended = System.nanoTime();
+        phaseNanos.get(Phase.ASSEMBLE).add(assembled - start);
+        phaseNanos.get(Phase.MINE).add(mined - assembled);
+        phaseNanos.get(Phase.APPEND).add(appended - mined);
+        blocks++;
+
+        final Set<Transaction> included = Collections.newSetFromMap(new IdentityHashMap<>());
+        included.addAll(block.getTransactions());
+        resolve(included, appended);
+        return true;
+    }
+
+    /**
+     * Resolves the in-flight transactions that were included in the block appended at the given time, or taken
+     * from the mempool and dropped. Called on the miner thread between blocks.
+     */
+    private void resolve(final Set<Transaction> included, final long appended) {
+        for (Map.Entry<Transaction, Pending> entry : inFlight.entrySet()) {
+            final Pending pending = entry.getValue();
+            if (included.contains(entry.getKey())) {
+                confirmationLatency.record(appended - pending.submitNanos);
+                confirmed.increment();
+            } else if (pending.submitted && !isPending(entry.getKey())) {
+                // taken from the mempool but failed to apply to the block
+                dropped.increment();
+            } else {
+                continue;
+            }
+            inFlight.remove(entry.getKey());
+            pending.resolved.countDown();
+        }
+    }
+
+    // a wallet has at most one pending transaction, so its inputs are claimed by that transaction only
+    private boolean isPending(final Transaction transaction) {
+        return mempool.isClaimed(transaction.getInputs().get(0).getTransactionOutputId());
+    }
+
+    /**
+     * Where the time of a run goes. Client phases are summed over all clients, block phases are on the miner thread.
+     */
+    public enum Phase {
+        // create and sign a transaction
+        SIGN,
+        // verify and admit a transaction to the mempool
+        SUBMIT,
+        // a client waiting for a wallet's previous transaction to be mined
+        WAIT,
+        ASSEMBLE,
+        MINE,
+        APPEND
+    }
+
+    private static void awaitAll(final List<Future<Void>> futures) throws InterruptedException {
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                logger.warn("Error while running load client: {}", e.getCause().toString());
+                throw new RuntimeException(e.getCause());
+            }
+        }
+    }
+
+    private static final class Pending {
+        private final long submitNanos;
+        private final CountDownLatch resolved = new CountDownLatch(1);
+        private volatile boolean submitted;
+
+        private Pending(long submitNanos) {
+            this.submitNanos = submitNanos;
+        }
+    }
+}
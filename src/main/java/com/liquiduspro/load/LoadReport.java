@@ -0,0 +1,57 @@
+package com.liquiduspro.load;
+
+import com.liquiduspro.metrics.HistogramSnapshot;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Outcome of a {@link LoadGenerator} run.
+ *
+ * @param transfers             transfers in the workload
+ * @param submitted             transactions accepted by the mempool
+ * @param confirmed             transactions included in a mined block
+ * @param insufficientFunds     transfers the sender could not afford when their turn came
+ * @param rejected              transactions refused by the mempool
+ * @param dropped               accepted transactions that failed to apply to their block
+ * @param blocks                mined blocks, the funding block excluded
+ * @param elapsedNanos          wall clock time of the workload
+ * @param submitLatency         sign and submit time per transaction
+ * @param confirmationLatency   time from submission to inclusion in a mined block
+ * @param phaseNanos            time spent per phase, summed over all threads
+ * @author econlq
+ */
+public record LoadReport(int transfers, long submitted, long confirmed, long insufficientFunds, long rejected,
+                         long dropped, long blocks, long elapsedNanos, HistogramSnapshot submitLatency,
+                         HistogramSnapshot confirmationLatency, Map<LoadGenerator.Phase, Long> phaseNanos) {
+
+    // confirmed transactions per second of wall clock time
+    public double transactionsPerSecond() {
+        return elapsedNanos == 0 ? 0 : confirmed * 1e9 / elapsedNanos;
+    }
+
+    public String format() {
+        final StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "transfers %d, submitted %d, confirmed %d in %d blocks%n",
+                transfers, submitted, confirmed, blocks));
+        out.append(String.format(Locale.ROOT, "insufficient funds %d, rejected %d, dropped %d%n",
+                insufficientFunds, rejected, dropped));
+        out.append(String.format(Locale.ROOT, "elapsed %.1f ms, sustained %.1f tx/s%n",
+                elapsedNanos / 1e6, transactionsPerSecond()));
+        out.append(latency("submit", submitLatency));
+        out.append(latency("confirmation", confirmationLatency));
+        final long total = phaseNanos.values().stream().mapToLong(Long::longValue).sum();
+        for (Map.Entry<LoadGenerator.Phase, Long> phase : phaseNanos.entrySet()) {
+            out.append(String.format(Locale.ROOT, "%-8s %10.1f ms %5.1f%%%n",
+                    phase.getKey().name().toLowerCase(Locale.ROOT), phase.getValue() / 1e6,
+                    total == 0 ? 0 : phase.getValue() * 100.0 / total));
+        }
+        return out.toString();
+    }
+
+    private static String latency(final String name, final HistogramSnapshot snapshot) {
+        return String.format(Locale.ROOT, "%s latency ms: mean %.3f, p50 %.3f, p90 %.3f, p99 %.3f, max %.3f%n",
+                name, snapshot.getMeanMillis(), snapshot.getP50Millis(), snapshot.getP90Millis(),
+                snapshot.getP99Millis(), snapshot.getMaxMillis());
+    }
+}
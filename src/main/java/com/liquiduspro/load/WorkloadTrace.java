@@ -0,0 +1,122 @@
+package com.liquiduspro.load;
+
+import com.liquiduspro.domain.transaction.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Ordered list of transfers between wallets, identified by their index, that a {@link LoadGenerator} executes.
+ * <br>
+ * A trace is either generated from a seed, which gives the same transfers for the same settings, or read back
+ * from a file written by {@link #write(Path)}, so a workload can be replayed exactly across versions.
+ * File format: {@code [int magic][byte version][long seed][int wallets][int count]} followed by
+ * {@code [int sender][int recipient][float amount]} per transfer.
+ *
+ * @author econlq
+ */
+public final class WorkloadTrace {
+    private static final Logger logger = LoggerFactory.getLogger(WorkloadTrace.class);
+    private static final int MAGIC = 0x4E424C54; // "NBLT"
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 1 + 8 + 4 + 4;
+    private static final int TRANSFER_SIZE = 4 + 4 + 4;
+    private final long seed;
+    private final int wallets;
+    private final List<Transfer> transfers;
+
+    public WorkloadTrace(long seed, int wallets, List<Transfer> transfers) {
+        this.seed = seed;
+        this.wallets = wallets;
+        this.transfers = Collections.unmodifiableList(new ArrayList<>(transfers));
+    }
+
+    /**
+     * Random transfers between distinct wallets, amounts are uniform in [{@link Transaction#MINIMUM_TRANSACTION}, maxAmount).
+     */
+    public static WorkloadTrace generate(final long seed, final int wallets, final int count, final float maxAmount) {
+        final Random random = new Random(seed);
+        final List<Transfer> transfers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int sender = random.nextInt(wallets);
+            // any other wallet
+            final int recipient = (sender + 1 + random.nextInt(wallets - 1)) % wallets;
+            final float amount = Transaction.MINIMUM_TRANSACTION
+                    + random.nextFloat() * (maxAmount - Transaction.MINIMUM_TRANSACTION);
+            transfers.add(new Transfer(sender, recipient, amount));
+        }
+        return new WorkloadTrace(seed, wallets, transfers);
+    }
+
+    public static WorkloadTrace read(final Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a workload trace: " + file);
+            }
+            final byte version = in.get();
+            if (version != VERSION) {
+                throw new IOException("Unsupported workload trace version: " + version);
+            }
+            final long seed = in.getLong();
+            final int wallets = in.getInt();
+            final int count = in.getInt();
+            final List<Transfer> transfers = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                final Transfer transfer = new Transfer(in.getInt(), in.getInt(), in.getFloat());
+                if (transfer.sender() < 0 || transfer.sender() >= wallets
+                        || transfer.recipient() < 0 || transfer.recipient() >= wallets) {
+                    throw new IOException("Transfer #" + i + " refers to a wallet out of " + wallets + ": " + transfer);
+                }
+                transfers.add(transfer);
+            }
+            return new WorkloadTrace(seed, wallets, transfers);
+        } catch (IOException e) {
+            logger.warn("Error while reading workload trace {}: {}", file, e.toString());
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void write(final Path file) {
+        final ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + transfers.size() * TRANSFER_SIZE);
+        out.putInt(MAGIC).put(VERSION).putLong(seed).putInt(wallets).putInt(transfers.size());
+        for (Transfer transfer : transfers) {
+            out.putInt(transfer.sender()).putInt(transfer.recipient()).putFloat(transfer.amount());
+        }
+        out.flip();
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        } catch (IOException e) {
+            logger.warn("Error while writing workload trace {}: {}", file, e.toString());
+            throw new RuntimeException(e);
+        }
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getWallets() {
+        return wallets;
+    }
+
+    public List<Transfer> getTransfers() {
+        return transfers;
+    }
+
+    // one transfer of the workload, wallets are indexes into the generator's wallets
+    public record Transfer(int sender, int recipient, float amount) {
+    }
+}
@@ -0,0 +1,179 @@
+package com.liquiduspro.mempool;
+
+import com.liquiduspro.crypto.BatchSignatureVerifier;
+import com.liquiduspro.domain.Block;
+import com.liquiduspro.domain.transaction.Transaction;
+import com.liquiduspro.domain.transaction.TransactionInput;
+import com.liquiduspro.singleton.UTXOSet;
+import com.liquiduspro.util.ErrorMessage;
+import com.liquiduspro.util.Hash;
+import com.liquiduspro.util.TransactionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of signed transactions waiting to be mined, safe to use from many producer and miner threads.
+ * <br>
+ * {@link #submit(Transaction)} validates a transaction against the {@link UTXOSet} and claims the outputs it spends,
+ * a transaction spending an output already claimed by another pending transaction is rejected (first seen wins).
+ * Pending transactions are kept in {@link Priority} order, {@link #assembleBlock(Hash, int)} takes the best ones
+ * and applies them to a new {@link Block} in one call, so one proof-of-work covers many transactions.
+ *
+ * @author econlq
+ */
+public final class Mempool {
+    private static final Logger logger = LoggerFactory.getLogger(Mempool.class);
+    private final ConcurrentSkipListSet<PendingTransaction> pending;
+    // output id -> pending transaction spending it
+    private final Map<Hash, PendingTransaction> claims = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger size = new AtomicInteger();
+
+    public Mempool(Priority priority) {
+        this.pending = new ConcurrentSkipListSet<>(priority.comparator());
+    }
+
+    /**
+     * Validates the transaction and adds it to the pool.
+     *
+     * @return false if the transaction is invalid or conflicts with a pending transaction
+     */
+    public boolean submit(final Transaction transaction) {
+        if (transaction == null) return false;
+        if (!transaction.verifySignature()) {
+            logger.warn(ErrorMessage.SIGNATURE_ERROR);
+            return false;
+        }
+        return admit(transaction);
+    }
+
+    /**
+     * Submits a batch of transactions, their signatures are verified in parallel.
+     *
+     * @return for every transaction whether it was added to the pool
+     */
+    public boolean[] submitAll(final List<Transaction> transactions) {
+        final boolean[] results = BatchSignatureVerifier.getInstance().verify(transactions);
+        for (int i = 0; i < results.length; i++) {
+            if (!results[i]) {
+                logger.warn(ErrorMessage.SIGNATURE_ERROR);
+                continue;
+            }
+            results[i] = admit(transactions.get(i));
+        }
+        return results;
+    }
+
+    // validates a transaction with a verified signature and claims its inputs
+    private boolean admit(final Transaction transaction) {
+        if (transaction.getValue() < 0) {
+            logger.warn(ErrorMessage.INVALID_TRANSACTION_VALUE);
+            return false;
+        }
+        if (transaction.getInputs().isEmpty()) {
+            logger.warn(ErrorMessage.INVALID_TRANSACTION_INPUT);
+            return false;
+        }
+        final UTXOSet utxoSet = UTXOSet.getInstance();
+        float inputsValue = 0;
+        try {
+            for (TransactionInput input : transaction.getInputs()) {
+                inputsValue += utxoSet.get(input.getTransactionOutputId()).getValue();
+            }
+        } catch (TransactionException e) {
+            logger.warn(e.getMessage());
+            return false;
+        }
+        if (inputsValue < Transaction.MINIMUM_TRANSACTION || inputsValue < transaction.getValue()) {
+            logger.warn("{}. Inputs: {}, value: {}", ErrorMessage.NO_ENOUGH_FUNDS, inputsValue, transaction.getValue());
+            return false;
+        }
+
+        final PendingTransaction entry = new PendingTransaction(transaction, sequence.getAndIncrement());
+        final List<Hash> claimed = new ArrayList<>(transaction.getInputs().size());
+        for (TransactionInput input : transaction.getInputs()) {
+            final Hash outputId = input.getTransactionOutputId();
+            final PendingTransaction owner = claims.putIfAbsent(outputId, entry);
+            if (owner != null) {
+                claimed.forEach(id -> claims.remove(id, entry));
+                logger.warn("{}: {}", ErrorMessage.DOUBLE_SPEND, outputId);
+                return false;
+            }
+            claimed.add(outputId);
+        }
+        pending.add(entry);
+        size.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Creates a block on top of the given hash with up to {@code maxTransactions} pending transactions in priority
+     * order, applied with {@link Block#addTransactions(List)}.
+     * Transactions that fail to apply (e.g. their outputs were spent in the meantime) are dropped.
+     * The block still has to be mined.
+     *
+     * @return the block, or null if the {@link UTXOSet} kept changing while the batch was executed, the
+     * transactions stay pending then and the caller can assemble again
+     */
+    public Block assembleBlock(final Hash previousHash, final int maxTransactions) {
+        final Block block = new Block(previousHash);
+        final List<PendingTransaction> taken = new ArrayList<>(maxTransactions);
+        while (taken.size() < maxTransactions) {
+            final PendingTransaction entry = pending.pollFirst();
+            if (entry == null) break;
+            size.decrementAndGet();
+            taken.add(entry);
+        }
+        final List<Transaction> candidates = new ArrayList<>(taken.size());
+        for (PendingTransaction entry : taken) {
+            candidates.add(entry.getTransaction());
+        }
+        final boolean[] added;
+        try {
+            added = block.addTransactions(candidates);
+        } catch (TransactionException e) {
+            logger.warn("Could not assemble block, {} transactions stay pending: {}", taken.size(), e.getMessage());
+            for (PendingTransaction entry : taken) {
+                pending.add(entry);
+                size.incrementAndGet();
+            }
+            return null;
+        }
+        for (int i = 0; i < added.length; i++) {
+            if (!added[i]) {
+                logger.warn("Dropped pending transaction #{}", taken.get(i).getSequence());
+            }
+        }
+        // outputs are spent in the UTXOSet now, later submissions of them fail validation
+        for (PendingTransaction entry : taken) {
+            for (TransactionInput input : entry.getTransaction().getInputs()) {
+                claims.remove(input.getTransactionOutputId(), entry);
+            }
+        }
+        logger.info("Assembled block template with {} of {} transactions", block.getTransactions().size(), taken.size());
+        return block;
+    }
+
+    // true if a pending transaction already spends the output
+    public boolean isClaimed(final Hash outputId) {
+        return claims.containsKey(outputId);
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public void clear() {
+        pending.clear();
+        claims.clear();
+        size.set(0);
+    }
+}
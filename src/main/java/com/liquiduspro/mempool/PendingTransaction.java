@@ -0,0 +1,24 @@
+package com.liquiduspro.mempool;
+
+import com.liquiduspro.domain.transaction.Transaction;
+
+/**
+ * A validated transaction waiting in a {@link Mempool} together with its arrival order.
+ */
+public final class PendingTransaction {
+    private final Transaction transaction;
+    private final long sequence;
+
+    PendingTransaction(Transaction transaction, long sequence) {
+        this.transaction = transaction;
+        this.sequence = sequence;
+    }
+
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+}
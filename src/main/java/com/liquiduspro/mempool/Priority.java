@@ -0,0 +1,23 @@
+package com.liquiduspro.mempool;
+
+import java.util.Comparator;
+
+/**
+ * Order in which a {@link Mempool} hands out pending transactions, earlier arrival breaks ties.
+ */
+public enum Priority {
+    // highest transferred value first
+    VALUE(Comparator.comparingDouble((PendingTransaction pending) -> pending.getTransaction().getValue()).reversed()),
+    // first come, first served
+    ARRIVAL((a, b) -> 0);
+
+    private final Comparator<PendingTransaction> comparator;
+
+    Priority(Comparator<PendingTransaction> primary) {
+        this.comparator = primary.thenComparingLong(PendingTransaction::getSequence);
+    }
+
+    Comparator<PendingTransaction> comparator() {
+        return comparator;
+    }
+}
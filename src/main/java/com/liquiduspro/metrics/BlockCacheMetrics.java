@@ -0,0 +1,77 @@
+package com.liquiduspro.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Hits, misses and evictions of the block body cache of a {@link com.liquiduspro.storage.CachedBlockStore}.
+ *
+ * @author econlq
+ */
+public final class BlockCacheMetrics implements BlockCacheMetricsMXBean {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile LongSupplier size = () -> 0L;
+    private volatile long capacity;
+
+    BlockCacheMetrics() {
+    }
+
+    // source of getSize() and the capacity, set by the cache
+    public void setSize(final LongSupplier size, final long capacity) {
+        this.size = size;
+        this.capacity = capacity;
+    }
+
+    public void recordHit() {
+        hits.increment();
+    }
+
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    public void recordEviction() {
+        evictions.increment();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getHitRatio() {
+        final long hit = hits.sum();
+        final long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public long getSize() {
+        return size.getAsLong();
+    }
+
+    @Override
+    public long getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public void reset() {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+}
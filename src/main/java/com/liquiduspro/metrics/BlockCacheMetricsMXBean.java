@@ -0,0 +1,25 @@
+package com.liquiduspro.metrics;
+
+/**
+ * Block bodies served from the cache or loaded from disk, see {@link BlockCacheMetrics}.
+ *
+ * @author econlq
+ */
+public interface BlockCacheMetricsMXBean {
+
+    long getHits();
+
+    long getMisses();
+
+    // hits / (hits + misses), 0 before the first lookup
+    double getHitRatio();
+
+    long getEvictions();
+
+    // bodies in the cache
+    long getSize();
+
+    long getCapacity();
+
+    void reset();
+}
@@ -0,0 +1,56 @@
+package com.liquiduspro.metrics;
+
+/**
+ * Point-in-time summary of a {@link LatencyHistogram}, durations in milliseconds.
+ * Shown as a composite attribute by the JMX beans.
+ *
+ * @author econlq
+ */
+public final class HistogramSnapshot {
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+    private final long count;
+    private final double meanNanos;
+    private final long p50Nanos;
+    private final long p90Nanos;
+    private final long p99Nanos;
+    private final long maxNanos;
+
+    HistogramSnapshot(long count, double meanNanos, long p50Nanos, long p90Nanos, long p99Nanos, long maxNanos) {
+        this.count = count;
+        this.meanNanos = meanNanos;
+        this.p50Nanos = p50Nanos;
+        this.p90Nanos = p90Nanos;
+        this.p99Nanos = p99Nanos;
+        this.maxNanos = maxNanos;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanMillis() {
+        return meanNanos / NANOS_PER_MILLI;
+    }
+
+    public double getP50Millis() {
+        return p50Nanos / NANOS_PER_MILLI;
+    }
+
+    public double getP90Millis() {
+        return p90Nanos / NANOS_PER_MILLI;
+    }
+
+    public double getP99Millis() {
+        return p99Nanos / NANOS_PER_MILLI;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms",
+                count, getMeanMillis(), getP50Millis(), getP90Millis(), getP99Millis(), getMaxMillis());
+    }
+}
@@ -0,0 +1,62 @@
+package com.liquiduspro.metrics;
+
+import java.util.concurrent.locks.Lock;
+import java.util.function.LongSupplier;
+
+/**
+ * Size and lock wait times of a shared structure such as the {@link com.liquiduspro.singleton.UTXOSet}.
+ * <br>
+ * {@link #lockRead(Lock)} and {@link #lockWrite(Lock)} first try to take the lock without waiting,
+ * the clock is only read when that fails, so uncontended acquisitions cost no more than before.
+ *
+ * @author econlq
+ */
+public final class LockMetrics implements LockMetricsMXBean {
+    private final LatencyHistogram readLockWait = new LatencyHistogram();
+    private final LatencyHistogram writeLockWait = new LatencyHistogram();
+    private volatile LongSupplier size = () -> 0L;
+
+    LockMetrics() {
+    }
+
+    // source of getSize(), set by the measured structure
+    public void setSize(final LongSupplier size) {
+        this.size = size;
+    }
+
+    public void lockRead(final Lock lock) {
+        lock(lock, readLockWait);
+    }
+
+    public void lockWrite(final Lock lock) {
+        lock(lock, writeLockWait);
+    }
+
+    private static void lock(final Lock lock, final LatencyHistogram waits) {
+        if (lock.tryLock()) return;
+        final long start = System.nanoTime();
+        lock.lock();
+        waits.recordSince(start);
+    }
+
+    @Override
+    public long getSize() {
+        return size.getAsLong();
+    }
+
+    @Override
+    public HistogramSnapshot getReadLockWait() {
+        return readLockWait.snapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getWriteLockWait() {
+        return writeLockWait.snapshot();
+    }
+
+    @Override
+    public void reset() {
+        readLockWait.reset();
+        writeLockWait.reset();
+    }
+}
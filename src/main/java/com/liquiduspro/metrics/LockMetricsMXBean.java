@@ -0,0 +1,18 @@
+package com.liquiduspro.metrics;
+
+/**
+ * Size and lock contention of a shared structure, see {@link LockMetrics}.
+ * Only contended acquisitions are timed, the count of a wait histogram is the number of times a thread had to wait.
+ *
+ * @author econlq
+ */
+public interface LockMetricsMXBean {
+
+    long getSize();
+
+    HistogramSnapshot getReadLockWait();
+
+    HistogramSnapshot getWriteLockWait();
+
+    void reset();
+}
@@ -0,0 +1,58 @@
+package com.liquiduspro.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Registry of the built-in metrics, registered as MXBeans on the platform MBean server under
+ * {@value #DOMAIN} when this class is first used. Browse them with jconsole or any JMX client.
+ * <ul>
+ *     <li>{@code type=Mining}: hash rate overall and per thread, mined blocks and their latency, stale retries</li>
+ *     <li>{@code type=Validation}: signature verifications per second, block and chain validation latency</li>
+ *     <li>{@code type=UTXOSet}: size and stripe lock wait times</li>
+ *     <li>{@code type=Blockchain}: height and read/write lock wait times</li>
+ *     <li>{@code type=BlockCache}: hits, misses and evictions of the block bodies cached by a persistent chain</li>
+ * </ul>
+ * Recording only touches striped {@link java.util.concurrent.atomic.LongAdder}s or thread-owned counters
+ * and allocates nothing, so the metrics are always on.
+ *
+ * @author econlq
+ */
+public final class Metrics {
+    public static final String DOMAIN = "com.liquiduspro.noobchain";
+    public static final MiningMetrics MINING = new MiningMetrics();
+    public static final ValidationMetrics VALIDATION = new ValidationMetrics();
+    public static final LockMetrics UTXO_SET = new LockMetrics();
+    public static final LockMetrics BLOCKCHAIN = new LockMetrics();
+    public static final BlockCacheMetrics BLOCK_CACHE = new BlockCacheMetrics();
+    private static final Logger logger = LoggerFactory.getLogger(Metrics.class);
+
+    static {
+        register("Mining", MINING);
+        register("Validation", VALIDATION);
+        register("UTXOSet", UTXO_SET);
+        register("Blockchain", BLOCKCHAIN);
+        register("BlockCache", BLOCK_CACHE);
+    }
+
+    private Metrics() {
+    }
+
+    private static void register(final String type, final Object bean) {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(DOMAIN + ":type=" + type);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(bean, name);
+            }
+        } catch (JMException | SecurityException e) {
+            // metrics are still recorded, only not visible over JMX
+            logger.warn("Error while registering {} metrics: {}", type, e.toString());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.liquiduspro.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hashes per mining thread, mined blocks with their latency, stale retries and cancelled blocks.
+ * <br>
+ * A thread gets its {@link ThreadCounter} once per nonce search through {@link #hashCounter()} and adds
+ * to it in batches, see {@link com.liquiduspro.mining.MiningEngine#search}.
+ *
+ * @author econlq
+ */
+public final class MiningMetrics implements MiningMetricsMXBean {
+    private final Map<Thread, ThreadCounter> hashesByThread = new ConcurrentHashMap<>();
+    private final ThreadLocal<ThreadCounter> hashes = ThreadLocal.withInitial(() -> {
+        final Thread thread = Thread.currentThread();
+        final ThreadCounter counter = new ThreadCounter(thread.getName() + "#" + thread.getId());
+        hashesByThread.put(thread, counter);
+        return counter;
+    });
+    // hashes of threads that have ended
+    private final LongAdder retiredHashes = new LongAdder();
+    private final LongAdder blocksMined = new LongAdder();
+    private final LatencyHistogram blockMiningLatency = new LatencyHistogram();
+    private final LongAdder staleRetries = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final Rate hashRate = new Rate(this::getHashes);
+
+    MiningMetrics() {
+    }
+
+    // hash counter of the current thread
+    public ThreadCounter hashCounter() {
+        return hashes.get();
+    }
+
+    public void recordBlockMined(final long nanos) {
+        blocksMined.increment();
+        blockMiningLatency.record(nanos);
+    }
+
+    public void recordStaleRetry() {
+        staleRetries.increment();
+    }
+
+    public void recordCancelled() {
+        cancelled.increment();
+    }
+
+    @Override
+    public long getHashes() {
+        retireEndedThreads();
+        long total = retiredHashes.sum();
+        for (ThreadCounter counter : hashesByThread.values()) {
+            total += counter.get();
+        }
+        return total;
+    }
+
+    @Override
+    public double getHashRate() {
+        return hashRate.perSecond();
+    }
+
+    @Override
+    public Map<String, Double> getHashRatePerThread() {
+        final Map<String, Double> rates = new TreeMap<>();
+        for (ThreadCounter counter : hashesByThread.values()) {
+            rates.put(counter.getThreadName(), counter.perSecond());
+        }
+        retireEndedThreads();
+        return rates;
+    }
+
+    @Override
+    public long getBlocksMined() {
+        return blocksMined.sum();
+    }
+
+    @Override
+    public HistogramSnapshot getBlockMiningLatency() {
+        return blockMiningLatency.snapshot();
+    }
+
+    @Override
+    public long getStaleRetries() {
+        return staleRetries.sum();
+    }
+
+    @Override
+    public long getCancelledBlocks() {
+        return cancelled.sum();
+    }
+
+    // ended threads have reported their last hashes, keep only their total
+    private void retireEndedThreads() {
+        for (Map.Entry<Thread, ThreadCounter> entry : hashesByThread.entrySet()) {
+            if (!entry.getKey().isAlive() && hashesByThread.remove(entry.getKey(), entry.getValue())) {
+                retiredHashes.add(entry.getValue().get());
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        blocksMined.reset();
+        blockMiningLatency.reset();
+        staleRetries.reset();
+        cancelled.reset();
+    }
+}
@@ -0,0 +1,31 @@
+package com.liquiduspro.metrics;
+
+import java.util.Map;
+
+/**
+ * Proof-of-work activity, see {@link MiningMetrics}.
+ *
+ * @author econlq
+ */
+public interface MiningMetricsMXBean {
+
+    long getHashes();
+
+    // nonces per second over all threads since the previous read
+    double getHashRate();
+
+    // nonces per second of every thread that mined, since the previous read
+    Map<String, Double> getHashRatePerThread();
+
+    long getBlocksMined();
+
+    HistogramSnapshot getBlockMiningLatency();
+
+    // blocks mined on a tip that had moved on and were mined again
+    long getStaleRetries();
+
+    // blocks given up while mining because the tip moved on
+    long getCancelledBlocks();
+
+    void reset();
+}
@@ -0,0 +1,32 @@
+package com.liquiduspro.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Events per second of a monotonic counter, measured between two consecutive reads.
+ * The counter itself is recorded elsewhere, reading the rate is the only synchronized part.
+ *
+ * @author econlq
+ */
+public final class Rate {
+    private final LongSupplier counter;
+    private long lastCount;
+    private long lastNanos;
+
+    public Rate(LongSupplier counter) {
+        this.counter = counter;
+        this.lastCount = counter.getAsLong();
+        this.lastNanos = System.nanoTime();
+    }
+
+    // events per second since the previous call, or since creation for the first call
+    public synchronized double perSecond() {
+        final long count = counter.getAsLong();
+        final long now = System.nanoTime();
+        final long elapsed = now - lastNanos;
+        final double rate = elapsed <= 0 ? 0d : (count - lastCount) * 1e9 / elapsed;
+        lastCount = count;
+        lastNanos = now;
+        return rate;
+    }
+}
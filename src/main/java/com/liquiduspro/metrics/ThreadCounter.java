@@ -0,0 +1,39 @@
+package com.liquiduspro.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counter owned by a single writing thread, e.g. the hashes of one mining thread.
+ * The owner adds with a release store and no read-modify-write, readers may be on any thread.
+ *
+ * @author econlq
+ */
+public final class ThreadCounter {
+    private final String threadName;
+    private final AtomicLong count = new AtomicLong();
+    private final Rate rate = new Rate(count::get);
+
+    ThreadCounter(String threadName) {
+        this.threadName = threadName;
+    }
+
+    // only to be called by the owning thread
+    public void add(final long delta) {
+        if (delta != 0) {
+            count.lazySet(count.get() + delta);
+        }
+    }
+
+    public long get() {
+        return count.get();
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    // per second since the previous read
+    double perSecond() {
+        return rate.perSecond();
+    }
+}
@@ -0,0 +1,56 @@
+package com.liquiduspro.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Signature verifications and the latency of validating single blocks and whole chains.
+ *
+ * @author econlq
+ */
+public final class ValidationMetrics implements ValidationMetricsMXBean {
+    private final LongAdder signatureVerifications = new LongAdder();
+    private final Rate signatureVerificationRate = new Rate(signatureVerifications::sum);
+    private final LatencyHistogram blockValidationLatency = new LatencyHistogram();
+    private final LatencyHistogram chainValidationLatency = new LatencyHistogram();
+
+    ValidationMetrics() {
+    }
+
+    public void recordSignatureVerification() {
+        signatureVerifications.increment();
+    }
+
+    public void recordBlockValidation(final long nanos) {
+        blockValidationLatency.record(nanos);
+    }
+
+    public void recordChainValidation(final long nanos) {
+        chainValidationLatency.record(nanos);
+    }
+
+    @Override
+    public long getSignatureVerifications() {
+        return signatureVerifications.sum();
+    }
+
+    @Override
+    public double getSignatureVerificationRate() {
+        return signatureVerificationRate.perSecond();
+    }
+
+    @Override
+    public HistogramSnapshot getBlockValidationLatency() {
+        return blockValidationLatency.snapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getChainValidationLatency() {
+        return chainValidationLatency.snapshot();
+    }
+
+    @Override
+    public void reset() {
+        blockValidationLatency.reset();
+        chainValidationLatency.reset();
+    }
+}
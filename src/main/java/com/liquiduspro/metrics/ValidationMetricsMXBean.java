@@ -0,0 +1,20 @@
+package com.liquiduspro.metrics;
+
+/**
+ * Signature verification and chain validation, see {@link ValidationMetrics}.
+ *
+ * @author econlq
+ */
+public interface ValidationMetricsMXBean {
+
+    long getSignatureVerifications();
+
+    // signature verifications per second since the previous read
+    double getSignatureVerificationRate();
+
+    HistogramSnapshot getBlockValidationLatency();
+
+    HistogramSnapshot getChainValidationLatency();
+
+    void reset();
+}
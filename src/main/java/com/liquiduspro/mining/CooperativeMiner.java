@@ -0,0 +1,94 @@
+package com.liquiduspro.mining;
+
+import com.liquiduspro.domain.Block;
+import com.liquiduspro.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Mines a single {@link Block} with all workers at once.
+ * <br>
+ * The non-negative nonce space is split into one contiguous range per worker. Every worker runs its own
+ * {@link MiningEngine} over its range, the first one to find a valid nonce raises a shared stop flag
+ * so the others give up within {@link MiningEngine#CHECK_INTERVAL} nonces. No proof-of-work is done
+ * on competing copies of the same tip.
+ *
+ * @author econlq
+ */
+public final class CooperativeMiner implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(CooperativeMiner.class);
+    private final int workers;
+    private final ExecutorService executor;
+
+    public CooperativeMiner(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Number of workers must be positive: " + workers);
+        }
+        this.workers = workers;
+        this.executor = Executors.newFixedThreadPool(workers);
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Mines the block in place, blocking until a valid nonce is found.
+     *
+     * @param block      the block to mine, its transactions must not change while mining
+     * @param difficulty the number of 0's needed to mine the block
+     */
+    public void mine(final Block block, final int difficulty) {
+        final long start = System.nanoTime();
+        block.prepareMining();
+        final AtomicBoolean stop = new AtomicBoolean(false);
+        final AtomicInteger winner = new AtomicInteger(MiningEngine.NOT_FOUND);
+        final long span = ((long) Integer.MAX_VALUE + 1) / workers;
+
+        final List<Callable<Void>> tasks = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            final int from = (int) (i * span);
+            final int to = (i == workers - 1) ? Integer.MAX_VALUE : (int) ((i + 1) * span);
+            tasks.add(() -> {
+                final int nonce = block.newMiningEngine().search(from, to, difficulty, stop::get);
+                if (nonce != MiningEngine.NOT_FOUND && winner.compareAndSet(MiningEngine.NOT_FOUND, nonce)) {
+                    stop.set(true);
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            stop.set(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Mining was interrupted", e);
+        } catch (ExecutionException e) {
+            logger.warn(e.toString());
+            throw new RuntimeException(e);
+        }
+
+        if (winner.get() == MiningEngine.NOT_FOUND || !block.applyNonce(winner.get(), difficulty)) {
+            throw new IllegalStateException("Nonce space exhausted for block " + block.getPreviousHash());
+        }
+        Metrics.MINING.recordBlockMined(System.nanoTime() - start);
+        logger.info("Block Mined. Hash: {}", block.getHash());
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
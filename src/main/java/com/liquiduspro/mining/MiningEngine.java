@@ -0,0 +1,205 @@
+package com.liquiduspro.mining;
+
+import com.liquiduspro.metrics.Metrics;
+import com.liquiduspro.metrics.ThreadCounter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Byte-level proof-of-work search for a single block header.
+ * <br>
+ * The hashed header is exactly the one used by {@link com.liquiduspro.domain.Block#calculateHash()}:
+ * {@code prefix + nonce + suffix} encoded as UTF-8, where prefix is {@code previousHash + timeStamp}
+ * and suffix is the merkle root. Every full 64-byte SHA-256 block of the prefix is compressed once
+ * into a midstate, so each nonce only rewrites its decimal digits into a preallocated buffer and
+ * compresses the remaining tail. Difficulty is checked on the leading zero bits of the raw digest,
+ * no hex encoding or allocation takes place per nonce. Tried nonces are reported to
+ * {@link Metrics#MINING} once per {@link #CHECK_INTERVAL}.
+ * <br>
+ * Instances are not thread-safe, use one engine per mining thread.
+ *
+ * @author econlq
+ */
+public final class MiningEngine {
+    public static final int NOT_FOUND = -1;
+    // how often (in nonces) the stop condition is polled
+    public static final int CHECK_INTERVAL = 4096;
+    private static final int MAX_NONCE_DIGITS = 10; // Integer.MAX_VALUE has 10 digits
+
+    private static final int[] K = {
+            0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+            0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+            0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+            0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+            0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+            0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+            0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+            0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+    private static final int[] INITIAL_STATE = {
+            0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+
+    private final int[] midstate = new int[8];
+    private final int[] state = new int[8];
+    private final int[] w = new int[64];
+    private final byte[] tail; // unhashed rest of the prefix + nonce digits + suffix + padding
+    private final int prefixTailLength;
+    private final byte[] suffix;
+    private final long midstateLength; // number of header bytes already folded into the midstate
+
+    public MiningEngine(final String prefix, final String suffix) {
+        this(prefix.getBytes(StandardCharsets.UTF_8), suffix.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public MiningEngine(final byte[] prefix, final byte[] suffix) {
+        this.suffix = suffix.clone();
+        final int fullBlocks = prefix.length / 64;
+        System.arraycopy(INITIAL_STATE, 0, midstate, 0, 8);
+        for (int i = 0; i < fullBlocks; i++) {
+            compress(midstate, prefix, i * 64);
+        }
+        this.midstateLength = fullBlocks * 64L;
+        this.prefixTailLength = prefix.length - fullBlocks * 64;
+        // room for the largest message + 0x80 + 8 length bytes, rounded up to whole blocks
+        final int maxMessage = prefixTailLength + MAX_NONCE_DIGITS + this.suffix.length + 1 + 8;
+        this.tail = new byte[(maxMessage + 63) & ~63];
+        System.arraycopy(prefix, fullBlocks * 64, tail, 0, prefixTailLength);
+    }
+
+    /**
+     * Searches the nonce range {@code [from, to)} for a hash with at least {@code difficulty} leading hex zeros.
+     *
+     * @param from       first nonce to try (inclusive, non-negative)
+     * @param to         last nonce to try (exclusive)
+     * @param difficulty the number of leading hex 0's required
+     * @param stop       optional condition polled every {@link #CHECK_INTERVAL} nonces, may be {@code null}
+     * @return the winning nonce or {@link #NOT_FOUND} if the range was exhausted or the search was stopped
+     */
+    public int search(final int from, final int to, final int difficulty, final BooleanSupplier stop) {
+        final int zeroBits = difficulty * 4;
+        final ThreadCounter hashes = Metrics.MINING.hashCounter();
+        int tried = 0;
+        try {
+            for (int nonce = from; nonce < to && nonce >= 0; nonce++) {
+                if ((nonce - from) % CHECK_INTERVAL == 0) {
+                    hashes.add(tried);
+                    tried = 0;
+                    if (stop != null && stop.getAsBoolean()) {
+                        return NOT_FOUND;
+                    }
+                }
+                hash(nonce);
+                tried++;
+                if (leadingZeroBits() >= zeroBits) {
+                    return nonce;
+                }
+            }
+            return NOT_FOUND;
+        } finally {
+            hashes.add(tried);
+        }
+    }
+
+    /**
+     * Hashes the header with the given nonce. The digest is kept in this engine's state,
+     * see {@link #leadingZeroBits()} and {@link #digest()}.
+     */
+    public void hash(final int nonce) {
+        // write the nonce digits right after the prefix tail
+        final int digits = digitCount(nonce);
+        int pos = prefixTailLength + digits;
+        int n = nonce;
+        for (int i = pos - 1; i >= prefixTailLength; i--) {
+            tail[i] = (byte) ('0' + n % 10);
+            n /= 10;
+        }
+        System.arraycopy(suffix, 0, tail, pos, suffix.length);
+        pos += suffix.length;
+
+        // SHA-256 padding: 0x80, zeros, big-endian bit length
+        final long bitLength = (midstateLength + pos) * 8;
+        final int blocks = (pos + 1 + 8 + 63) / 64;
+        final int end = blocks * 64;
+        tail[pos] = (byte) 0x80;
+        Arrays.fill(tail, pos + 1, end - 8, (byte) 0);
+        for (int i = 0; i < 8; i++) {
+            tail[end - 1 - i] = (byte) (bitLength >>> (8 * i));
+        }
+
+        System.arraycopy(midstate, 0, state, 0, 8);
+        for (int i = 0; i < blocks; i++) {
+            compress(state, tail, i * 64);
+        }
+    }
+
+    public int leadingZeroBits() {
+        int bits = 0;
+        for (int word : state) {
+            if (word != 0) {
+                return bits + Integer.numberOfLeadingZeros(word);
+            }
+            bits += 32;
+        }
+        return bits;
+    }
+
+    // raw 32-byte digest of the last hashed nonce
+    public byte[] digest() {
+        final byte[] out = new byte[32];
+        for (int i = 0; i < 8; i++) {
+            out[4 * i] = (byte) (state[i] >>> 24);
+            out[4 * i + 1] = (byte) (state[i] >>> 16);
+            out[4 * i + 2] = (byte) (state[i] >>> 8);
+            out[4 * i + 3] = (byte) state[i];
+        }
+        return out;
+    }
+
+    private static int digitCount(final int value) {
+        int digits = 1;
+        for (int n = value; n >= 10; n /= 10) {
+            digits++;
+        }
+        return digits;
+    }
+
+    private void compress(final int[] h, final byte[] block, final int offset) {
+        for (int i = 0; i < 16; i++) {
+            final int j = offset + 4 * i;
+            w[i] = (block[j] & 0xff) << 24 | (block[j + 1] & 0xff) << 16 | (block[j + 2] & 0xff) << 8 | (block[j + 3] & 0xff);
+        }
+        for (int i = 16; i < 64; i++) {
+            final int s0 = Integer.rotateRight(w[i - 15], 7) ^ Integer.rotateRight(w[i - 15], 18) ^ (w[i - 15] >>> 3);
+            final int s1 = Integer.rotateRight(w[i - 2], 17) ^ Integer.rotateRight(w[i - 2], 19) ^ (w[i - 2] >>> 10);
+            w[i] = w[i - 16] + s0 + w[i - 7] + s1;
+        }
+        int a = h[0], b = h[1], c = h[2], d = h[3], e = h[4], f = h[5], g = h[6], k = h[7];
+        for (int i = 0; i < 64; i++) {
+            final int s1 = Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25);
+            final int ch = (e & f) ^ (~e & g);
+            final int t1 = k + s1 + ch + K[i] + w[i];
+            final int s0 = Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22);
+            final int maj = (a & b) ^ (a & c) ^ (b & c);
+            final int t2 = s0 + maj;
+            k = g;
+            g = f;
+            f = e;
+            e = d + t1;
+            d = c;
+            c = b;
+            b = a;
+            a = t1 + t2;
+        }
+        h[0] += a;
+        h[1] += b;
+        h[2] += c;
+        h[3] += d;
+        h[4] += e;
+        h[5] += f;
+        h[6] += g;
+        h[7] += k;
+    }
+}
@@ -0,0 +1,51 @@
+package com.liquiduspro.network;
+
+import com.liquiduspro.domain.Block;
+import com.liquiduspro.domain.transaction.Transaction;
+import com.liquiduspro.mempool.Mempool;
+import com.liquiduspro.singleton.Blockchain;
+import com.liquiduspro.util.Hash;
+
+/**
+ * {@link NodeStore} of the {@link Blockchain} of this JVM, received transactions go to a {@link Mempool}.
+ * <br>
+ * Received blocks are validated and added with {@link Blockchain#acceptBlock(Block)}, blocks kept on a side branch
+ * count as stored and are relayed too. Announce locally mined blocks with a tip listener:
+ * {@code blockchain.addTipListener((height, hash) -> node.announceBlock(hash))}.
+ *
+ * @author econlq
+ */
+public final class BlockchainNodeStore implements NodeStore {
+    private final Blockchain blockchain;
+    private final Mempool mempool;
+
+    public BlockchainNodeStore(final Blockchain blockchain, final Mempool mempool) {
+        this.blockchain = blockchain;
+        this.mempool = mempool;
+    }
+
+    @Override
+    public boolean containsBlock(final Hash hash) {
+        return blockchain.containsBlock(hash);
+    }
+
+    @Override
+    public Block getBlock(final Hash hash) {
+        return blockchain.getBlock(hash);
+    }
+
+    @Override
+    public Hash getTip() {
+        return blockchain.getLatestBlockHash();
+    }
+
+    @Override
+    public boolean addBlock(final Block block) {
+        return blockchain.acceptBlock(block) || blockchain.containsBlock(block.getHash());
+    }
+
+    @Override
+    public boolean addTransaction(final Transaction transaction) {
+        return mempool.submit(transaction);
+    }
+}
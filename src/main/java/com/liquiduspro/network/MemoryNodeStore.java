@@ -0,0 +1,77 @@
+package com.liquiduspro.network;
+
+import com.liquiduspro.domain.Block;
+import com.liquiduspro.domain.transaction.Transaction;
+import com.liquiduspro.util.Hash;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link NodeStore} of blocks and transactions by hash, independent of the {@link com.liquiduspro.singleton.Blockchain}
+ * singleton, so several nodes can run in one JVM, e.g. over loopback in tests and benchmarks.
+ * Blocks are only checked for their hash and a known parent, transactions are not verified.
+ * The tip is the first block seen at the greatest height.
+ *
+ * @author econlq
+ */
+public final class MemoryNodeStore implements NodeStore {
+    private final Map<Hash, Block> blocks = new ConcurrentHashMap<>();
+    private final Map<Hash, Integer> heights = new ConcurrentHashMap<>();
+    private final Map<Hash, Transaction> transactions = new ConcurrentHashMap<>();
+    private volatile Hash tip;
+    private volatile int tipHeight = -1;
+
+    @Override
+    public boolean containsBlock(final Hash hash) {
+        return blocks.containsKey(hash);
+    }
+
+    @Override
+    public Block getBlock(final Hash hash) {
+        return blocks.get(hash);
+    }
+
+    @Override
+    public Hash getTip() {
+        return tip;
+    }
+
+    public int getTipHeight() {
+        return tipHeight;
+    }
+
+    @Override
+    public synchronized boolean addBlock(final Block block) {
+        final Hash hash = block.getHash();
+        if (blocks.containsKey(hash) || !hash.equals(block.calculateHash())) {
+            return false;
+        }
+        final Integer parentHeight = heights.get(block.getPreviousHash());
+        if (parentHeight == null && !Hash.ZERO.equals(block.getPreviousHash())) {
+            return false;
+        }
+        final int height = parentHeight == null ? 0 : parentHeight + 1;
+        blocks.put(hash, block);
+        heights.put(hash, height);
+        if (height > tipHeight) {
+            tip = hash;
+            tipHeight = height;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean addTransaction(final Transaction transaction) {
+        return transaction.getTransactionId() != null
+                && transactions.putIfAbsent(transaction.getTransactionId(), transaction) == null;
+    }
+
+    public int getBlockCount() {
+        return blocks.size();
+    }
+
+    public int getTransactionCount() {
+        return transactions.size();
+    }
+}
@@ -0,0 +1,44 @@
+package com.liquiduspro.network;
+
+/**
+ * Messages exchanged by {@link PeerNode}s, the code is the first byte of a frame's body.
+ *
+ * @author econlq
+ */
+public enum MessageType {
+    // [hash] a block the sender has, request it if it is unknown
+    ANNOUNCE_BLOCK(1),
+    // [hash] request for a block
+    GET_BLOCK(2),
+    // [encoded block] answer to GET_BLOCK
+    BLOCK(3),
+    // [hash] the requested block is unknown to the sender
+    NOT_FOUND(4),
+    // [encoded transaction] a transaction is pushed whole
+    TRANSACTION(5);
+
+    private static final MessageType[] BY_CODE = new MessageType[6];
+
+    static {
+        for (MessageType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    private final byte code;
+
+    MessageType(int code) {
+        this.code = (byte) code;
+    }
+
+    public byte code() {
+        return code;
+    }
+
+    public static MessageType of(final byte code) {
+        if (code < 0 || code >= BY_CODE.length || BY_CODE[code] == null) {
+            throw new IllegalArgumentException("Unknown message type: " + code);
+        }
+        return BY_CODE[code];
+    }
+}
@@ -0,0 +1,34 @@
+package com.liquiduspro.network;
+
+import com.liquiduspro.domain.Block;
+import com.liquiduspro.domain.transaction.Transaction;
+import com.liquiduspro.util.Hash;
+
+/**
+ * Blocks and transactions a {@link PeerNode} serves to its peers and stores what they send.
+ * A node only calls its store from its selector thread.
+ *
+ * @author econlq
+ */
+public interface NodeStore {
+
+    boolean containsBlock(Hash hash);
+
+    // block with the given hash or null if it is unknown
+    Block getBlock(Hash hash);
+
+    // hash of the best block, announced to every new peer, null or Hash.ZERO for an empty chain
+    Hash getTip();
+
+    /**
+     * Stores a block whose parent is known.
+     *
+     * @return true if the block was valid and is new, it is then relayed to the other peers
+     */
+    boolean addBlock(Block block);
+
+    /**
+     * @return true if the transaction was valid and is new, it is then relayed to the other peers
+     */
+    boolean addTransaction(Transaction transaction);
+}
@@ -0,0 +1,451 @@
+package com.liquiduspro.network;
+
+import com.liquiduspro.domain.Block;
+import com.liquiduspro.domain.transaction.Transaction;
+import com.liquiduspro.storage.BlockCodec;
+import com.liquiduspro.util.Hash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Node relaying blocks and transactions to its peers over non-blocking TCP connections, all of them served by
+ * one selector thread.
+ * <br>
+ * Messages are {@code [int length][byte type][body]} frames, see {@link MessageType}. A new block is announced by
+ * its hash and peers that do not have it request it. A received block whose parent is unknown is kept as an orphan
+ * and the parent is requested from the same peer, so a node that fell behind walks back to a block it has.
+ * New peers are announced the tip of the {@link NodeStore} on connect. Transactions are small and pushed whole.
+ * Blocks and transactions the store accepts are relayed to every peer but the one they came from.
+ * <br>
+ * A frame is encoded once into a direct buffer that every receiving peer shares through a duplicate, each connection
+ * flushes its queued frames with one gathering write. Frames are read into a direct buffer per connection and
+ * decoded in place. The store is only called from the selector thread, the public methods are thread-safe.
+ *
+ * @author econlq
+ */
+public final class PeerNode implements AutoCloseable {
+    public static final int MAX_FRAME = 16 << 20;
+    private static final Logger logger = LoggerFactory.getLogger(PeerNode.class);
+    private static final int HEADER_SIZE = 4 + 1;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    // frames per gathering write
+    private static final int MAX_GATHER = 64;
+    private static final int MAX_ORPHANS = 1024;
+    private static final int MAX_SEEN_TRANSACTIONS = 16_384;
+    private final NodeStore store;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Thread thread;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+    private volatile int peerCount;
+    // state below is only touched by the selector thread
+    private final List<Peer> peers = new ArrayList<>();
+    // blocks whose parent is unknown by hash, oldest first
+    private final Map<Hash, Block> orphans = new LinkedHashMap<>();
+    // block hash -> peer it was requested from
+    private final Map<Hash, Peer> requested = new HashMap<>();
+    private final Map<Hash, Boolean> seenTransactions = new LinkedHashMap<>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Hash, Boolean> eldest) {
+            return size() > MAX_SEEN_TRANSACTIONS;
+        }
+    };
+    private final LongAdder blocksReceived = new LongAdder();
+    private final LongAdder transactionsReceived = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+
+    /**
+     * Starts a node listening on the given address, port 0 picks a free port.
+     */
+    public PeerNode(final NodeStore store, final InetSocketAddress address) throws IOException {
+        this.store = store;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(address);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        this.thread = new Thread(this::run, "peer-node-" + getLocalAddress().getPort());
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Peer node listening on {}", getLocalAddress());
+    }
+
+    public InetSocketAddress getLocalAddress() throws IOException {
+        return (InetSocketAddress) server.getLocalAddress();
+    }
+
+    /**
+     * Connects to a peer, blocking until the connection is established.
+     */
+    public void connect(final InetSocketAddress address) throws IOException {
+        final SocketChannel channel = SocketChannel.open(address);
+        submit(() -> {
+            try {
+                register(channel);
+            } catch (IOException e) {
+                logger.warn("Error while connecting to {}: {}", address, e.toString());
+                closeQuietly(channel);
+            }
+        });
+    }
+
+    // announces a block of the store to all peers
+    public void announceBlock(final Hash hash) {
+        final ByteBuffer frame = hashFrame(MessageType.ANNOUNCE_BLOCK, hash);
+        submit(() -> broadcast(frame, null));
+    }
+
+    // pushes a transaction to all peers, it is encoded on the calling thread
+    public void broadcastTransaction(final Transaction transaction) {
+        final ByteBuffer frame = transactionFrame(transaction);
+        submit(() -> {
+            seenTransactions.put(transaction.getTransactionId(), Boolean.TRUE);
+            broadcast(frame, null);
+        });
+    }
+
+    public int getPeerCount() {
+        return peerCount;
+    }
+
+    // blocks received from peers and accepted by the store
+    public long getBlocksReceived() {
+        return blocksReceived.sum();
+    }
+
+    // transactions received from peers and accepted by the store
+    public long getTransactionsReceived() {
+        return transactionsReceived.sum();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void submit(final Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                for (Runnable task = tasks.poll(); task != null; task = tasks.poll()) {
+                    task.run();
+                }
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            logger.warn("Error while selecting: {}", e.toString());
+        } finally {
+            for (Peer peer : new ArrayList<>(peers)) {
+                disconnect(peer);
+            }
+            closeQuietly(server);
+            closeQuietly(selector);
+        }
+    }
+
+    private void handle(final SelectionKey key) {
+        if (key.isValid() && key.isAcceptable()) {
+            try {
+                final SocketChannel channel = server.accept();
+                if (channel != null) {
+                    register(channel);
+                }
+            } catch (IOException e) {
+                logger.warn("Error while accepting a peer: {}", e.toString());
+            }
+            return;
+        }
+        final Peer peer = (Peer) key.attachment();
+        try {
+            if (key.isValid() && key.isReadable()) {
+                read(peer);
+            }
+            if (key.isValid() && key.isWritable()) {
+                flush(peer);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Error while serving peer {}: {}", peer, e.toString());
+            disconnect(peer);
+        }
+    }
+
+    private void register(final SocketChannel channel) throws IOException {
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        final Peer peer = new Peer(channel);
+        peer.key = channel.register(selector, SelectionKey.OP_READ, peer);
+        peers.add(peer);
+        peerCount = peers.size();
+        logger.info("Connected to peer {}", peer);
+        final Hash tip = store.getTip();
+        if (tip != null && !Hash.ZERO.equals(tip)) {
+            send(peer, hashFrame(MessageType.ANNOUNCE_BLOCK, tip));
+        }
+    }
+
+    private void disconnect(final Peer peer) {
+        if (!peers.remove(peer)) return;
+        peerCount = peers.size();
+        requested.values().removeIf(owner -> owner == peer);
+        peer.key.cancel();
+        closeQuietly(peer.channel);
+        logger.info("Disconnected from peer {}", peer);
+    }
+
+    private void read(final Peer peer) throws IOException {
+        final int read = peer.channel.read(peer.in);
+        if (read < 0) {
+            disconnect(peer);
+            return;
+        }
+        bytesReceived.add(read);
+        final ByteBuffer in = peer.in.flip();
+        int needed = 0;
+        while (in.remaining() >= 4) {
+            final int length = in.getInt(in.position());
+            if (length < 1 || length > MAX_FRAME) {
+                throw new IOException("Invalid frame length: " + length);
+            }
+            if (in.remaining() < 4 + length) {
+                needed = 4 + length;
+                break;
+            }
+            final ByteBuffer body = in.slice(in.position() + 4, length);
+            in.position(in.position() + 4 + length);
+            receive(peer, body);
+            if (!peer.channel.isOpen()) return;
+        }
+        in.compact();
+        if (needed > in.capacity()) {
+            // a frame larger than the buffer
+            final ByteBuffer larger = ByteBuffer.allocateDirect(needed);
+            peer.in = larger.put(in.flip());
+        }
+    }
+
+    private void receive(final Peer peer, final ByteBuffer body) {
+        final MessageType type = MessageType.of(body.get());
+        switch (type) {
+            case ANNOUNCE_BLOCK -> {
+                final Hash hash = Hash.read(body);
+                if (!store.containsBlock(hash) && !orphans.containsKey(hash)) {
+                    request(peer, hash);
+                }
+            }
+            case GET_BLOCK -> {
+                final Hash hash = Hash.read(body);
+                final Block block = store.getBlock(hash);
+                send(peer, block == null ? hashFrame(MessageType.NOT_FOUND, hash) : blockFrame(block));
+            }
+            case BLOCK -> receiveBlock(peer, BlockCodec.decode(body));
+            case NOT_FOUND -> requested.remove(Hash.read(body));
+            case TRANSACTION -> receiveTransaction(peer, BlockCodec.decodeTransaction(body));
+        }
+    }
+
+    private void receiveBlock(final Peer peer, final Block block) {
+        final Hash hash = block.getHash();
+        requested.remove(hash);
+        if (store.containsBlock(hash)) return;
+        final Hash parent = block.getPreviousHash();
+        if (!Hash.ZERO.equals(parent) && !store.containsBlock(parent)) {
+            orphans.put(hash, block);
+            if (orphans.size() > MAX_ORPHANS) {
+                orphans.remove(orphans.keySet().iterator().next());
+            }
+            if (!orphans.containsKey(parent)) {
+                request(peer, parent);
+            }
+            return;
+        }
+        if (!connect(peer, block)) return;
+        // orphans waiting for this block, and for theirs
+        final ArrayDeque<Hash> connected = new ArrayDeque<>();
+        connected.add(hash);
+        while (!connected.isEmpty() && !orphans.isEmpty()) {
+            final Hash parentHash = connected.poll();
+            final Iterator<Block> waiting = orphans.values().iterator();
+            final List<Block> children = new ArrayList<>();
+            while (waiting.hasNext()) {
+                final Block orphan = waiting.next();
+                if (orphan.getPreviousHash().equals(parentHash)) {
+                    waiting.remove();
+                    children.add(orphan);
+                }
+            }
+            for (Block child : children) {
+                if (connect(peer, child)) {
+                    connected.add(child.getHash());
+                }
+            }
+        }
+    }
+
+    // stores a block with a known parent and relays it
+    private boolean connect(final Peer peer, final Block block) {
+        if (!store.addBlock(block)) {
+            logger.warn("Peer {} sent a block that was not accepted: {}", peer, block.getHash());
+            return false;
+        }
+        blocksReceived.increment();
+        broadcast(hashFrame(MessageType.ANNOUNCE_BLOCK, block.getHash()), peer);
+        return true;
+    }
+
+    private void receiveTransaction(final Peer peer, final Transaction transaction) {
+        final Hash id = transaction.getTransactionId();
+        if (id == null || seenTransactions.put(id, Boolean.TRUE) != null) return;
+        if (!store.addTransaction(transaction)) return;
+        transactionsReceived.increment();
+        broadcast(transactionFrame(transaction), peer);
+    }
+
+    private void request(final Peer peer, final Hash hash) {
+        if (requested.putIfAbsent(hash, peer) == null) {
+            send(peer, hashFrame(MessageType.GET_BLOCK, hash));
+        }
+    }
+
+    // sends the frame to every peer except the given one
+    private void broadcast(final ByteBuffer frame, final Peer except) {
+        for (Peer peer : new ArrayList<>(peers)) {
+            if (peer != except) {
+                send(peer, frame);
+            }
+        }
+    }
+
+    private void send(final Peer peer, final ByteBuffer frame) {
+        peer.out.add(frame.duplicate());
+        if ((peer.key.interestOps() & SelectionKey.OP_WRITE) != 0) return;
+        try {
+            flush(peer);
+        } catch (IOException e) {
+            logger.warn("Error while sending to peer {}: {}", peer, e.toString());
+            disconnect(peer);
+        }
+    }
+
+    // writes queued frames until the socket buffer is full, then waits for the channel to become writable
+    private void flush(final Peer peer) throws IOException {
+        while (!peer.out.isEmpty()) {
+            int count = 0;
+            for (ByteBuffer frame : peer.out) {
+                peer.gather[count++] = frame;
+                if (count == MAX_GATHER) break;
+            }
+            bytesSent.add(peer.channel.write(peer.gather, 0, count));
+            final boolean full = peer.gather[count - 1].hasRemaining();
+            while (!peer.out.isEmpty() && !peer.out.peek().hasRemaining()) {
+                peer.out.poll();
+            }
+            if (full) break;
+        }
+        Arrays.fill(peer.gather, null);
+        final int ops = peer.out.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+        if (peer.key.interestOps() != ops) {
+            peer.key.interestOps(ops);
+        }
+    }
+
+    private static ByteBuffer hashFrame(final MessageType type, final Hash hash) {
+        final ByteBuffer frame = header(type, Hash.LENGTH);
+        hash.write(frame);
+        return frame.flip();
+    }
+
+    private static ByteBuffer blockFrame(final Block block) {
+        final ByteBuffer frame = header(MessageType.BLOCK, BlockCodec.encodedSize(block));
+        BlockCodec.encode(block, frame);
+        return frame.flip();
+    }
+
+    private static ByteBuffer transactionFrame(final Transaction transaction) {
+        final ByteBuffer frame = header(MessageType.TRANSACTION, BlockCodec.encodedSize(transaction));
+        BlockCodec.encode(transaction, frame);
+        return frame.flip();
+    }
+
+    // direct buffer with the frame header written, the body is encoded straight into it
+    private static ByteBuffer header(final MessageType type, final int bodySize) {
+        if (1 + bodySize > MAX_FRAME) {
+            throw new IllegalArgumentException("Frame too large: " + (1 + bodySize));
+        }
+        return ByteBuffer.allocateDirect(HEADER_SIZE + bodySize).putInt(1 + bodySize).put(type.code());
+    }
+
+    private static void closeQuietly(final AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            logger.debug("Error while closing: {}", e.toString());
+        }
+    }
+
+    // connection to one peer, only touched by the selector thread
+    private static final class Peer {
+        final SocketChannel channel;
+        final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+        ByteBuffer in = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        SelectionKey key;
+        private final String name;
+
+        Peer(final SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.name = String.valueOf(channel.getRemoteAddress());
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
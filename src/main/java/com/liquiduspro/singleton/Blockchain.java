@@ -1,95 +1,646 @@
 package com.liquiduspro.singleton;
 
 import com.liquiduspro.domain.Block;
+import com.liquiduspro.domain.BlockHeader;
+import com.liquiduspro.domain.transaction.Transaction;
+import com.liquiduspro.execution.BlockValidator;
+import com.liquiduspro.execution.UTXOBatch;
+import com.liquiduspro.metrics.Metrics;
+import com.liquiduspro.storage.BlockReader;
+import com.liquiduspro.storage.BlockStore;
+import com.liquiduspro.storage.BlockWriter;
+import com.liquiduspro.storage.CachedBlockStore;
+import com.liquiduspro.storage.ChainLog;
+import com.liquiduspro.storage.ChainView;
+import com.liquiduspro.storage.HashIndex;
+import com.liquiduspro.storage.InMemoryBlockStore;
+import com.liquiduspro.storage.MappedBlockStore;
+import com.liquiduspro.util.Constants;
+import com.liquiduspro.util.Hash;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 import java.util.stream.IntStream;
 
 /**
- * Abstraction of the (in-memory) blockchain for the {@link com.liquiduspro.NoobChain} and {@link com.liquiduspro.ParallelNoobChain}
+ * Abstraction of the blockchain for the {@link com.liquiduspro.NoobChain} and {@link com.liquiduspro.ParallelNoobChain}.
+ * Blocks are kept in memory unless {@link Constants#DATA_DIR} is set or a directory is {@link #open(Path) opened},
+ * then they are persisted in a {@link MappedBlockStore}. A persistent chain keeps only the block headers on the heap
+ * and up to {@link Constants#BLOCK_CACHE_SIZE} recently used blocks with their transactions in a {@link CachedBlockStore},
+ * the chain is validated from the headers alone.
+ * <br>
+ * Blocks can also be looked up by hash and transactions by id in O(1) through {@link HashIndex indexes}
+ * that are maintained on every append. Opening a store rebuilds the block index from the headers alone, the
+ * transaction index is built from the block bodies on the first transaction lookup.
+ * <br>
+ * Blocks that do not extend the tip are kept as side blocks when their parent is known and their header is valid,
+ * their transactions are validated once the branch is applied. If a side branch gets more cumulative
+ * {@link BlockValidator#getBlockWork() work} than the active chain, the chain reorganises: active blocks above the fork point are
+ * reverted in the {@link UTXOSet} with their {@link UTXOBatch#of(Block) undo data}, newest first, and the
+ * branch is applied on top. Blocks below the fork point are left alone. A block extending the tip must already be
+ * applied to the {@link UTXOSet}, e.g. by {@link Block#addTransactions(List)}, while side blocks are only applied
+ * when their branch becomes active. A local block that ends up on a side branch is reverted first.
+ * <br>
+ * Every change of the tip increments the {@link #getTipEpoch() tip epoch}, which miners poll without locking to
+ * give up on blocks built on an old tip, and is published to the registered {@link TipListener tip listeners}.
+ * <br>
+ * The headers of the active chain are also kept in a {@link ChainLog}. Every write publishes the new chain as one
+ * immutable {@link ChainView}, so {@link #size()}, {@link #getLatestBlockHash()}, {@link #getHeader(int)} and
+ * {@link #getChainView()} take no lock and never wait for a writer, and a reorganisation becomes visible at once.
  *
  * @author econlq
  */
 public class Blockchain {
     public static final Logger logger = LoggerFactory.getLogger(Blockchain.class);
+    // side blocks further below the tip are dropped
+    public static final int MAX_FORK_DEPTH = 100;
     private static final Blockchain INSTANCE = new Blockchain();
-    private final List<Block> chain = new ArrayList<>();
     private final ReadWriteLock rwLock = new ReentrantReadWriteLock();
+    private BlockStore chain;
+    // headers of the active chain, published once per write
+    private final ChainLog headers = new ChainLog();
+    // block hash -> height
+    private final HashIndex heightsByHash = new HashIndex();
+    // transaction id -> height << 32 | position in the block
+    private final HashIndex locationsByTransactionId = new HashIndex();
+    // the transactions of the blocks below this height are in locationsByTransactionId
+    private int indexedTransactions;
+    // cumulative work of the active chain up to each height
+    private long[] chainWork = new long[64];
+    // valid blocks off the active chain by hash
+    private final Map<Hash, SideBlock> sideBlocks = new HashMap<>();
+    // highest block known to be valid together with its hash, the genesis block is trusted
+    private volatile Checkpoint validated = Checkpoint.GENESIS;
+    // incremented with the write lock held whenever the tip changes
+    private volatile long tipEpoch;
+    private final List<TipListener> tipListeners = new CopyOnWriteArrayList<>();
 
     private Blockchain() {
+        this(Constants.DATA_DIR == null
+                ? new InMemoryBlockStore()
+                : persistentStore(Path.of(Constants.DATA_DIR)));
+        Metrics.BLOCKCHAIN.setSize(this::size);
+    }
+
+    /**
+     * Chain over the given store, separate from the {@link #getInstance() shared chain}, e.g. for benchmarks.
+     * Its blocks are still applied to and committed in the shared {@link UTXOSet}.
+     */
+    public Blockchain(BlockStore store) {
+        this.chain = store;
+        reindex();
     }
 
     public static Blockchain getInstance() {
         return INSTANCE;
     }
 
+    private static BlockStore persistentStore(Path directory) {
+        return new CachedBlockStore(new MappedBlockStore(directory), Constants.BLOCK_CACHE_SIZE);
+    }
+
+    /**
+     * Switches to the persistent block store in the given directory, closing the current store.
+     * Blocks already in the directory become the chain, the {@link UTXOSet} is recovered from the same directory.
+     */
+    public void open(Path directory) {
+        Metrics.BLOCKCHAIN.lockWrite(rwLock.writeLock());
+        try {
+            chain.close();
+            chain = persistentStore(directory);
+            reindex();
+            validated = Checkpoint.GENESIS;
+            final int utxoHeight = UTXOSet.getInstance().open(directory);
+            if (utxoHeight != chain.size() - 1) {
+                logger.warn("UTXO set was recovered up to block #{} but the chain has {} blocks", utxoHeight, chain.size());
+            }
+            tipEpoch++;
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+        publishTip();
+    }
+
+    public void close() {
+        Metrics.BLOCKCHAIN.lockWrite(rwLock.writeLock());
+        try {
+            chain.close();
+            chain = new InMemoryBlockStore();
+            reindex();
+            validated = Checkpoint.GENESIS;
+            UTXOSet.getInstance().close();
+            tipEpoch++;
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+        publishTip();
+    }
+
+    // validates only the blocks added since the last successful validation
     public boolean validateChain() {
-        return IntStream.range(1, chain.size())
+        return validateChain(false);
+    }
+
+    /**
+     * Validates the chain. Unless a full validation is requested, blocks up to the validated height are skipped
+     * as long as the block at that height still has the remembered hash.
+     *
+     * @param fullValidation re-validate every block from height 1, e.g. for audits
+     */
+    public boolean validateChain(boolean fullValidation) {
+        final long start = System.nanoTime();
+        // one consistent chain, blocks added meanwhile are left to the next validation
+        final ChainView view = getChainView();
+        final int size = view.size();
+        final Checkpoint checkpoint = validated;
+        int from = 1;
+        if (!fullValidation && checkpoint.height() > 0) {
+            final BlockHeader header = checkpoint.height() < size ? view.get(checkpoint.height()) : null;
+            if (header != null && header.hash().equals(checkpoint.hash())) {
+                from = checkpoint.height() + 1;
+            } else {
+                logger.warn("Checkpoint #{} does not match the chain, validating all blocks", checkpoint.height());
+            }
+        }
+        final boolean valid = IntStream.range(from, size)
                 .parallel()
                 .allMatch(i -> {
-                    Block current = chain.get(i);
-                    Block previous = chain.get(i - 1);
-                    return current != null && previous != null && current.isValid(previous);
+                    final long blockStart = System.nanoTime();
+                    final boolean blockValid = view.get(i).isValid(view.get(i - 1));
+                    Metrics.VALIDATION.recordBlockValidation(System.nanoTime() - blockStart);
+                    return blockValid;
                 });
+        if (valid && size > 1) {
+            markValidated(size - 1, view.get(size - 1).hash());
+        }
+        Metrics.VALIDATION.recordChainValidation(System.nanoTime() - start);
+        return valid;
     }
 
+    /**
+     * Trusts all blocks up to the given height, as long as the block there has the given hash.
+     * Later validations start above it.
+     */
+    public void setCheckpoint(int height, Hash hash) {
+        validated = new Checkpoint(height, hash);
+    }
+
+    public int getValidatedHeight() {
+        return validated.height();
+    }
+
+    private synchronized void markValidated(int height, Hash hash) {
+        if (height > validated.height()) {
+            validated = new Checkpoint(height, hash);
+        }
+    }
+
+    /**
+     * Immutable view of the headers of the active chain as last published. Taking it is a volatile read,
+     * nothing is copied and no lock is taken.
+     */
+    public ChainView getChainView() {
+        return headers.view();
+    }
+
+    /**
+     * Read-only view of the blocks of the {@link #getChainView() published chain}. Nothing is copied, every access
+     * reads the block with the header at that height. A view taken before a reorganisation keeps returning the
+     * blocks of the old branch while they are kept as side blocks, and null once they are pruned.
+     */
     public List<Block> getChain() {
-        rwLock.readLock().lock();
+        final ChainView view = getChainView();
+        return new AbstractList<>() {
+            @Override
+            public Block get(int index) {
+                return blockAt(view.get(index), index);
+            }
+
+            @Override
+            public int size() {
+                return view.size();
+            }
+        };
+    }
+
+    // block with the given header, at the given height of the active chain or on a side branch
+    private Block blockAt(BlockHeader header, int height) {
+        Metrics.BLOCKCHAIN.lockRead(rwLock.readLock());
         try {
-            return new ArrayList<>(chain);
+            if (height < chain.size() && chain.getHeader(height).hash().equals(header.hash())) {
+                return chain.get(height);
+            }
+            final SideBlock side = sideBlocks.get(header.hash());
+            return side == null ? null : side.block();
         } finally {
             rwLock.readLock().unlock();
         }
     }
 
+    /**
+     * Streams all blocks to the channel in the {@link BlockWriter} format.
+     *
+     * @return the number of bytes written
+     */
+    public long exportTo(WritableByteChannel channel) throws IOException {
+        final BlockWriter writer = new BlockWriter(channel);
+        final int size = size();
+        for (int i = 0; i < size; i++) {
+            writer.write(get(i));
+        }
+        writer.close();
+        return writer.getBytesWritten();
+    }
+
+    /**
+     * Reads blocks in the {@link BlockWriter} format, {@link #acceptBlock(Block) validates} them and adds them on top
+     * of the chain with their changes applied to the {@link UTXOSet}.
+     * Stops at the first block that is invalid or does not extend the chain.
+     *
+     * @return the number of blocks added
+     */
+    public int importFrom(ReadableByteChannel channel) throws IOException {
+        final BlockReader reader = new BlockReader(channel);
+        int imported = 0;
+        for (Block block = reader.read(); block != null; block = reader.read()) {
+            if (!acceptBlock(block)) {
+                break;
+            }
+            imported++;
+        }
+        return imported;
+    }
+
     public void add(Block block) {
-        rwLock.writeLock().lock();
+        Metrics.BLOCKCHAIN.lockWrite(rwLock.writeLock());
         try {
-            chain.add(block);
+            append(block);
+            UTXOSet.getInstance().commit(chain.size() - 1, UTXOBatch.of(block));
+            headers.publish();
+            tipEpoch++;
         } finally {
             rwLock.writeLock().unlock();
         }
+        publishTip();
     }
 
+    /**
+     * Appends a block extending the tip, or keeps a block extending another known block on a side branch and
+     * reorganises onto that branch if it has more work. The transactions of the block must already be applied to
+     * the {@link UTXOSet}, e.g. by {@link com.liquiduspro.mempool.Mempool#assembleBlock(Hash, int)}, they are
+     * reverted if the block does not extend the tip.
+     *
+     * @return true if the block is part of the active chain afterwards
+     */
     public boolean addBlock(Block block) {
-        rwLock.writeLock().lock();
+        return addMinedBlock(block).isActive();
+    }
+
+    /**
+     * Adds a block as {@link #addBlock(Block)} does and reports whether it extended the tip or the chain reorganised
+     * onto its branch, e.g. for a miner that counts the blocks it appended.
+     */
+    public AddResult addMinedBlock(Block block) {
+        return addBlock(block, false);
+    }
+
+    /**
+     * Adds a block received from another node, its transactions are not applied to the {@link UTXOSet} yet.
+     * A block extending the tip is {@link BlockValidator validated} and applied with its
+     * {@link UTXOBatch#of(Block) changes}, any other block is handled as in {@link #addBlock(Block)}.
+     *
+     * @return true if the block is part of the active chain afterwards
+     */
+    public boolean acceptBlock(Block block) {
+        return acceptBlock(block, false);
+    }
+
+    /**
+     * @param verified the header and the signatures of the block were already checked, e.g. by the
+     *                 {@link com.liquiduspro.execution.BulkImporter}, only its transactions are validated
+     * @see #acceptBlock(Block)
+     */
+    public boolean acceptBlock(Block block, boolean verified) {
+        return addBlock(block, true, verified).isActive();
+    }
+
+    private AddResult addBlock(Block block, boolean apply) {
+        return addBlock(block, apply, false);
+    }
+
+    private AddResult addBlock(Block block, boolean apply, boolean verified) {
+        final int height;
+        final AddResult result;
+        Metrics.BLOCKCHAIN.lockWrite(rwLock.writeLock());
         try {
-            final int index = chain.size() - 1;
-            final String latestBlockHash = getLatestBlockHash();
-            if (chain.isEmpty() || block.getPreviousHash().equals(latestBlockHash)) {
-                chain.add(block);
-                logger.info("Added Block #{} to the blockchain. Hash: {}", index, block.getHash());
-                return true;
+            if (chain.size() == 0 || block.getPreviousHash().equals(chain.getLatestBlockHash())) {
+                if (apply && !applyReceived(block, verified)) {
+                    return AddResult.REJECTED;
+                }
+                append(block);
+                UTXOSet.getInstance().commit(chain.size() - 1, UTXOBatch.of(block));
+                pruneSideBlocks();
+                logger.info("Added Block #{} to the blockchain. Hash: {}", chain.size() - 1, block.getHash());
+                result = AddResult.EXTENDED;
             } else {
-                logger.warn("Block #{} has an invalid previous hash: {} != {}", index, block.getPreviousHash(), latestBlockHash);
-                return false;
+                if (!apply && !containsBlockLocked(block.getHash())) {
+                    // applied for the tip it was built on, side blocks are applied when their branch becomes active
+                    UTXOSet.getInstance().revert(UTXOBatch.of(block));
+                }
+                result = addSideBlock(block);
+                if (!result.isActive()) {
+                    return result;
+                }
             }
+            height = chain.size() - 1;
+            headers.publish();
+            tipEpoch++;
         } finally {
             rwLock.writeLock().unlock();
         }
+        notifyTipListeners(height, block.getHash());
+        return result;
     }
 
-    public String getLatestBlockHash() {
-        rwLock.readLock().lock();
+    // validates a received block extending the tip and applies its changes, called with the write lock held
+    private boolean applyReceived(Block block, boolean verified) {
+        final Hash hash = block.getHash();
+        if (heightsByHash.contains(hash) || sideBlocks.containsKey(hash)) {
+            logger.warn("Block {} is already known", hash);
+            return false;
+        }
+        // only the first block of the chain may mint coins
+        final boolean genesis = chain.size() == 0;
+        if (genesis && !Hash.ZERO.equals(block.getPreviousHash())) {
+            logger.warn("Block {} is not a genesis block", hash);
+            return false;
+        }
+        final BlockValidator validator = BlockValidator.getInstance();
+        if (!verified && !(validator.isValidHeader(block) && validator.hasValidSignatures(block))
+                || !validator.hasValidTransactions(block, UTXOSet.getInstance(), genesis)) {
+            return false;
+        }
+        if (!UTXOSet.getInstance().apply(UTXOBatch.of(block))) {
+            logger.warn("Block {} spends unavailable outputs", hash);
+            return false;
+        }
+        return true;
+    }
+
+    // whether the block is on the active chain or a side branch
+    public boolean containsBlock(Hash blockHash) {
+        Metrics.BLOCKCHAIN.lockRead(rwLock.readLock());
         try {
-            if (chain.isEmpty()) {
-                // this is the genesis block
-                return "0";
-            } else {
-                return chain.get(chain.size() - 1).getHash();
+            return containsBlockLocked(blockHash);
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    // called with the read or write lock held
+    private boolean containsBlockLocked(Hash blockHash) {
+        return heightsByHash.contains(blockHash) || sideBlocks.containsKey(blockHash);
+    }
+
+    /**
+     * Number of tip changes so far. It is a volatile read without locking, cheap enough to be polled while mining:
+     * a block built when the epoch had another value is built on an old tip.
+     */
+    public long getTipEpoch() {
+        return tipEpoch;
+    }
+
+    /**
+     * Registers a listener called after every tip change, on the thread that changed the tip once the chain is
+     * unlocked. The chain may have moved on again by the time a listener runs.
+     */
+    public void addTipListener(TipListener listener) {
+        tipListeners.add(listener);
+    }
+
+    public void removeTipListener(TipListener listener) {
+        tipListeners.remove(listener);
+    }
+
+    private void publishTip() {
+        if (tipListeners.isEmpty()) return;
+        final ChainView view = getChainView();
+        notifyTipListeners(view.size() - 1, view.isEmpty() ? Hash.ZERO : view.getLatestBlockHash());
+    }
+
+    private void notifyTipListeners(int height, Hash hash) {
+        for (TipListener listener : tipListeners) {
+            try {
+                listener.tipChanged(height, hash);
+            } catch (RuntimeException e) {
+                logger.warn("Error while notifying tip listener: {}", e.toString());
             }
+        }
+    }
+
+    // cumulative work of the active chain
+    public long getChainWork() {
+        Metrics.BLOCKCHAIN.lockRead(rwLock.readLock());
+        try {
+            return chain.size() == 0 ? 0 : chainWork[chain.size() - 1];
         } finally {
             rwLock.readLock().unlock();
         }
     }
 
+    // number of blocks kept on side branches
+    public int getSideBlockCount() {
+        Metrics.BLOCKCHAIN.lockRead(rwLock.readLock());
+        try {
+            return sideBlocks.size();
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    // called with the write lock held
+    private AddResult addSideBlock(Block block) {
+        final Hash hash = block.getHash();
+        if (heightsByHash.contains(hash) || sideBlocks.containsKey(hash)) {
+            logger.warn("Block {} is already known", hash);
+            return AddResult.REJECTED;
+        }
+        final long parentHeight = heightsByHash.get(block.getPreviousHash());
+        final SideBlock parent = sideBlocks.get(block.getPreviousHash());
+        if (parentHeight == HashIndex.NOT_FOUND && parent == null) {
+            logger.warn("Block {} has an unknown previous hash: {}", hash, block.getPreviousHash());
+            return AddResult.REJECTED;
+        }
+        // proof-of-work and merkle root before the block is stored and its work counted
+        final BlockValidator validator = BlockValidator.getInstance();
+        if (!validator.isValidHeader(block)) {
+            return AddResult.REJECTED;
+        }
+        final SideBlock side = parent == null
+                ? new SideBlock(block, (int) parentHeight + 1, chainWork[(int) parentHeight] + validator.getBlockWork())
+                : new SideBlock(block, parent.height() + 1, parent.chainWork() + validator.getBlockWork());
+        sideBlocks.put(hash, side);
+        if (side.chainWork() <= chainWork[chain.size() - 1]) {
+            logger.info("Kept Block #{} on a side branch. Hash: {}", side.height(), hash);
+            return AddResult.SIDE_BRANCH;
+        }
+        return reorganise(side) ? AddResult.REORGANISED : AddResult.REJECTED;
+    }
+
+    /**
+     * Switches the active chain to the branch ending in the given side block, called with the write lock held.
+     * The signatures and transactions of every branch block are {@link BlockValidator validated} against the outputs
+     * of the branch before it is applied, the headers were checked when the blocks were stored.
+     * If a branch block is invalid, the previous chain is restored and the block is dropped with all side blocks
+     * descending from it.
+     */
+    private boolean reorganise(SideBlock tip) {
+        final List<SideBlock> branch = new ArrayList<>();
+        for (SideBlock node = tip; node != null; node = sideBlocks.get(node.block().getPreviousHash())) {
+            branch.add(node);
+        }
+        final SideBlock root = branch.get(branch.size() - 1);
+        final int forkHeight = root.height() - 1;
+        // the branch must fork off the active chain, not off a block that was disconnected or pruned meanwhile
+        if (forkHeight >= chain.size() || !root.block().getPreviousHash().equals(chain.getHeader(forkHeight).hash())) {
+            logger.warn("Branch of Block {} does not fork off the active chain, dropping it", tip.block().getHash());
+            removeSideBranches(List.of(root.block().getHash()));
+            return false;
+        }
+        final UTXOSet utxoSet = UTXOSet.getInstance();
+        final BlockValidator validator = BlockValidator.getInstance();
+
+        // active blocks above the fork point, newest first
+        final List<SideBlock> disconnected = new ArrayList<>();
+        for (int height = chain.size() - 1; height > forkHeight; height--) {
+            disconnected.add(new SideBlock(chain.get(height), height, chainWork[height]));
+        }
+        disconnect(forkHeight);
+
+        for (int i = branch.size() - 1; i >= 0; i--) {
+            final Block block = branch.get(i).block();
+            if (!validator.hasValidSignatures(block) || !validator.hasValidTransactions(block, utxoSet, false)
+                    || !utxoSet.apply(UTXOBatch.of(block))) {
+                logger.warn("Block {} is invalid or spends unavailable outputs, keeping the previous chain", block.getHash());
+                disconnect(forkHeight);
+                for (int j = disconnected.size() - 1; j >= 0; j--) {
+                    final Block restored = disconnected.get(j).block();
+                    utxoSet.apply(UTXOBatch.of(restored));
+                    append(restored);
+                }
+                removeSideBranches(List.of(block.getHash()));
+                utxoSet.commit(chain.size() - 1);
+                return false;
+            }
+            append(block);
+        }
+        for (SideBlock block : branch) {
+            sideBlocks.remove(block.block().getHash());
+        }
+        for (SideBlock block : disconnected) {
+            sideBlocks.put(block.block().getHash(), block);
+        }
+        if (validated.height() > forkHeight) {
+            validated = new Checkpoint(forkHeight, chain.get(forkHeight).getHash());
+        }
+        final List<UTXOBatch> reverted = new ArrayList<>(disconnected.size());
+        for (SideBlock block : disconnected) {
+            reverted.add(UTXOBatch.of(block.block()));
+        }
+        final List<UTXOBatch> applied = new ArrayList<>(branch.size());
+        for (int i = branch.size() - 1; i >= 0; i--) {
+            applied.add(UTXOBatch.of(branch.get(i).block()));
+        }
+        utxoSet.commitSnapshot(chain.size() - 1, reverted, applied);
+        pruneSideBlocks();
+        logger.info("Reorganised onto Block #{} ({} blocks disconnected, {} connected). Hash: {}",
+                tip.height(), disconnected.size(), branch.size(), tip.block().getHash());
+        return true;
+    }
+
+    // reverts the active blocks above the given height, called with the write lock held
+    private void disconnect(int forkHeight) {
+        for (int height = chain.size() - 1; height > forkHeight; height--) {
+            final Block block = chain.get(height);
+            UTXOSet.getInstance().revert(UTXOBatch.of(block));
+            unindex(block, height);
+        }
+        chain.truncate(forkHeight + 1);
+        headers.truncate(forkHeight + 1);
+        indexedTransactions = Math.min(indexedTransactions, forkHeight + 1);
+    }
+
+    // called with the write lock held, readers see the block once the headers are published
+    private void append(Block block) {
+        chain.append(block);
+        final int height = chain.size() - 1;
+        final BlockHeader header = chain.getHeader(height);
+        index(header, height);
+        // blocks above a gap are indexed with the gap on the next transaction lookup
+        if (indexedTransactions == height) {
+            indexTransactions(block, height);
+            indexedTransactions++;
+        }
+        headers.append(header);
+    }
+
+    // drops side blocks too far below the tip with their descendants, called with the write lock held
+    private void pruneSideBlocks() {
+        if (sideBlocks.isEmpty()) return;
+        final int lowest = chain.size() - 1 - MAX_FORK_DEPTH;
+        final List<Hash> pruned = new ArrayList<>();
+        for (SideBlock side : sideBlocks.values()) {
+            if (side.height() < lowest) {
+                pruned.add(side.block().getHash());
+            }
+        }
+        removeSideBranches(pruned);
+    }
+
+    // removes the given side blocks and every side block descending from them, called with the write lock held
+    private void removeSideBranches(List<Hash> roots) {
+        if (roots.isEmpty()) return;
+        final Map<Hash, List<Hash>> children = new HashMap<>();
+        for (SideBlock side : sideBlocks.values()) {
+            children.computeIfAbsent(side.block().getPreviousHash(), parent -> new ArrayList<>())
+                    .add(side.block().getHash());
+        }
+        final ArrayDeque<Hash> pending = new ArrayDeque<>(roots);
+        while (!pending.isEmpty()) {
+            final Hash hash = pending.pop();
+            if (sideBlocks.remove(hash) != null) {
+                pending.addAll(children.getOrDefault(hash, List.of()));
+            }
+        }
+    }
+
+    public Hash getLatestBlockHash() {
+        final ChainView view = getChainView();
+        if (view.isEmpty()) {
+            // this is the genesis block
+            return Hash.ZERO;
+        } else {
+            return view.getLatestBlockHash();
+        }
+    }
+
     public Block get(int index) {
-        rwLock.readLock().lock();
+        Metrics.BLOCKCHAIN.lockRead(rwLock.readLock());
         try {
             if (index < 0 || index >= chain.size()) {
                 logger.error("Invalid index: {}", index);
@@ -101,12 +652,171 @@ public class Blockchain {
         }
     }
 
-    public int size() {
-        rwLock.readLock().lock();
+    // header of the block at the given height, read without loading its transactions
+    public BlockHeader getHeader(int index) {
+        final ChainView view = getChainView();
+        if (index < 0 || index >= view.size()) {
+            logger.error("Invalid index: {}", index);
+            return null;
+        }
+        return view.get(index);
+    }
+
+    // height of the block with the given hash or -1 if it is not part of the chain
+    public int getHeight(Hash blockHash) {
+        Metrics.BLOCKCHAIN.lockRead(rwLock.readLock());
+        try {
+            return (int) heightsByHash.get(blockHash);
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    // block with the given hash or null if it is not part of the chain
+    public Block getBlock(Hash blockHash) {
+        Metrics.BLOCKCHAIN.lockRead(rwLock.readLock());
+        try {
+            final long height = heightsByHash.get(blockHash);
+            return height == HashIndex.NOT_FOUND ? null : chain.get((int) height);
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    // block and position of the transaction with the given id or null if it is not part of the chain
+    public TransactionLocation findTransaction(Hash transactionId) {
+        return withTransactionIndex(() -> {
+            final long location = locationsByTransactionId.get(transactionId);
+            return location == HashIndex.NOT_FOUND
+                    ? null
+                    : new TransactionLocation((int) (location >>> 32), (int) location);
+        });
+    }
+
+    public Transaction getTransaction(Hash transactionId) {
+        return withTransactionIndex(() -> {
+            final long location = locationsByTransactionId.get(transactionId);
+            if (location == HashIndex.NOT_FOUND) return null;
+            return chain.get((int) (location >>> 32)).getTransactions().get((int) location);
+        });
+    }
+
+    public boolean containsTransaction(Hash transactionId) {
+        return withTransactionIndex(() -> locationsByTransactionId.contains(transactionId));
+    }
+
+    // runs the lookup with the read lock held, or with the write lock after indexing the missing transactions
+    private <T> T withTransactionIndex(Supplier<T> lookup) {
+        Metrics.BLOCKCHAIN.lockRead(rwLock.readLock());
         try {
-            return chain.size();
+            if (indexedTransactions == chain.size()) {
+                return lookup.get();
+            }
         } finally {
             rwLock.readLock().unlock();
         }
+        Metrics.BLOCKCHAIN.lockWrite(rwLock.writeLock());
+        try {
+            for (int height = indexedTransactions; height < chain.size(); height++) {
+                indexTransactions(chain.get(height), height);
+            }
+            indexedTransactions = chain.size();
+            return lookup.get();
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        return getChainView().size();
+    }
+
+    // called with the write lock held
+    private void index(BlockHeader header, int height) {
+        if (height == chainWork.length) {
+            chainWork = Arrays.copyOf(chainWork, height * 2);
+        }
+        chainWork[height] = (height == 0 ? 0 : chainWork[height - 1]) + BlockValidator.getInstance().getBlockWork();
+        heightsByHash.put(header.hash(), height);
+    }
+
+    // called with the write lock held
+    private void indexTransactions(Block block, int height) {
+        final List<Transaction> transactions = block.getTransactions();
+        for (int position = 0; position < transactions.size(); position++) {
+            final Hash transactionId = transactions.get(position).getTransactionId();
+            if (transactionId != null) {
+                locationsByTransactionId.put(transactionId, (long) height << 32 | position);
+            }
+        }
+    }
+
+    // called with the write lock held
+    private void unindex(Block block, int height) {
+        heightsByHash.remove(block.getHash());
+        if (height >= indexedTransactions) return;
+        final List<Transaction> transactions = block.getTransactions();
+        for (int position = 0; position < transactions.size(); position++) {
+            final Hash transactionId = transactions.get(position).getTransactionId();
+            // the same transaction may also be in a block below
+            if (transactionId != null && locationsByTransactionId.get(transactionId) >>> 32 == height) {
+                locationsByTransactionId.remove(transactionId);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the block index from the headers in the store, called with the write lock held or from the
+     * constructor. No block body is read, the transaction index is built on the first lookup.
+     */
+    private void reindex() {
+        heightsByHash.clear();
+        locationsByTransactionId.clear();
+        indexedTransactions = 0;
+        sideBlocks.clear();
+        headers.clear();
+        for (int height = 0; height < chain.size(); height++) {
+            final BlockHeader header = chain.getHeader(height);
+            index(header, height);
+            headers.append(header);
+        }
+        headers.publish();
+    }
+
+    // called after the tip moved to the block with the given height and hash, height is -1 for an empty chain
+    @FunctionalInterface
+    public interface TipListener {
+        void tipChanged(int height, Hash hash);
+    }
+
+    // where a transaction of the chain is stored
+    /**
+     * How {@link #addMinedBlock(Block)} added a block.
+     */
+    public enum AddResult {
+        // the block was appended on top of the tip
+        EXTENDED,
+        // the chain switched to the branch the block completes
+        REORGANISED,
+        // the block was kept on a branch with less work than the active chain
+        SIDE_BRANCH,
+        // the block is invalid, already known or its parent is unknown
+        REJECTED;
+
+        // whether the block is part of the active chain
+        public boolean isActive() {
+            return this == EXTENDED || this == REORGANISED;
+        }
+    }
+
+    public record TransactionLocation(int height, int position) {
+    }
+
+    // block off the active chain with its height and the cumulative work of its branch
+    private record SideBlock(Block block, int height, long chainWork) {
+    }
+
+    private record Checkpoint(int height, Hash hash) {
+        static final Checkpoint GENESIS = new Checkpoint(0, null);
     }
 }
@@ -1,96 +1,529 @@
 package com.liquiduspro.singleton;
 
+import com.liquiduspro.crypto.KeyHandle;
+import com.liquiduspro.crypto.KeyRegistry;
 import com.liquiduspro.domain.transaction.TransactionOutput;
+import com.liquiduspro.domain.transaction.UTXOLookup;
+import com.liquiduspro.execution.UTXOBatch;
+import com.liquiduspro.metrics.Metrics;
+import com.liquiduspro.storage.UTXOJournal;
+import com.liquiduspro.util.Constants;
 import com.liquiduspro.util.ErrorMessage;
+import com.liquiduspro.util.Hash;
+import com.liquiduspro.util.PersistentHashMap;
 import com.liquiduspro.util.TransactionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Path;
+import java.security.PublicKey;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Global UTXOSet to store {@link TransactionOutput} for {@link com.liquiduspro.NoobChain}
+ * <br>
+ * Outputs are split into {@link #STRIPES} stripes by their {@link Hash} id, each stripe is an immutable
+ * {@link PersistentHashMap} that writers replace, lookups take no lock.
+ * Writers lock the stripe of the output id, so writes to different ids run in parallel
+ * while each write still updates the set, the owner index and the pending journal changes atomically. Whole-set operations ({@link #clear()},
+ * {@link #commit(int, UTXOBatch)}, {@link #open(Path)}) lock all stripes. Waits for a stripe are reported to
+ * {@link Metrics#UTXO_SET}.
+ * <br>
+ * Because the stripes are persistent maps, a {@link UTXOSnapshot} of the whole set only copies their references:
+ * {@link #snapshot()} returns the current state and {@link #getCommittedSnapshot()} the state at the last committed
+ * block. Readers of a snapshot, e.g. validators, balance queries or the journal snapshot, never hold up writers.
+ * <br>
+ * When a directory is {@link #open(Path) opened} (or {@link Constants#DATA_DIR} is set) the changes are made durable
+ * per block in a {@link UTXOJournal} by {@link #commit(int, UTXOBatch)}: the batch of the committed block and the
+ * single {@link #add adds} and {@link #remove removes} since the last commit. Batches {@link #apply applied} for a
+ * block that is not committed, e.g. a block template that lost the race for the tip, never reach the journal.
+ * <br>
+ * Outputs are also indexed by their recipient together with a running balance, so a wallet's balance and coins
+ * cost time proportional to its own outputs, see {@link #getBalance(KeyHandle)} and {@link #getUTXOs(KeyHandle)}.
+ * The index is keyed by {@link KeyHandle}, so every instance of a key, e.g. one decoded from a block store,
+ * finds the same outputs.
  *
  * @author econlq
  */
-public class UTXOSet {
+public class UTXOSet implements UTXOLookup {
+    public static final int STRIPES = stripeCount();
     private static final Logger logger = LoggerFactory.getLogger(UTXOSet.class);
+    // marks a removal in pendingChanges, which cannot hold null values
+    private static final TransactionOutput REMOVED = new TransactionOutput(null, 0f, null, Hash.ZERO);
     private static final UTXOSet INSTANCE = new UTXOSet();
-    private final Map<String, TransactionOutput> UTXOs = new HashMap<>();
-    private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+    // stripe -> outputs whose id falls into the stripe
+    private final AtomicReferenceArray<PersistentHashMap<Hash, TransactionOutput>> UTXOs = new AtomicReferenceArray<>(STRIPES);
+    private final Map<KeyHandle, OwnedOutputs> UTXOsByOwner = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    // single adds and removes since the last commit that differ from the committed snapshot
+    private final Map<Hash, TransactionOutput> pendingChanges = new ConcurrentHashMap<>();
+    private volatile boolean pendingClear;
+    private volatile UTXOJournal journal;
+    // held while a commit writes to the journal, taken before the stripes are released so commits stay in order
+    private final ReentrantLock journalLock = new ReentrantLock();
+    // odd while all stripes are locked, lets snapshot() detect that it raced with a whole-set write
+    private volatile int wholeSetWrites;
+    private volatile UTXOSnapshot committed;
 
     private UTXOSet() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+            UTXOs.set(i, PersistentHashMap.empty());
+        }
+        committed = new UTXOSnapshot(roots(), -1);
+        Metrics.UTXO_SET.setSize(this::size);
+        if (Constants.DATA_DIR != null) {
+            open(Path.of(Constants.DATA_DIR));
+        }
     }
 
     public static UTXOSet getInstance() {
         return INSTANCE;
     }
 
-    public Map<String, TransactionOutput> getUTXOs() {
-        return UTXOs;
+    // power of two with a few stripes per core
+    private static int stripeCount() {
+        return Math.max(16, Integer.highestOneBit(Constants.AVAILABLE_PROCESSORS * 4 - 1) << 1);
+    }
+
+    // stripe of an output id, also used by UTXOSnapshot
+    static int stripeIndex(Hash id) {
+        final int hash = id.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    /**
+     * Read-only view of all outputs, see {@link #snapshot()}.
+     */
+    public Map<Hash, TransactionOutput> getUTXOs() {
+        return snapshot();
+    }
+
+    /**
+     * Point-in-time view of all outputs, it does not change when the set does. Taking it copies
+     * {@link #STRIPES} references and never waits for a lock: if a whole-set write such as
+     * {@link #apply(UTXOBatch)} is in progress the copy is retried, so a snapshot never holds half of a block.
+     * Single {@link #add adds} and {@link #remove removes} to different stripes running meanwhile may each be in it or not.
+     */
+    public UTXOSnapshot snapshot() {
+        while (true) {
+            final int writes = wholeSetWrites;
+            if ((writes & 1) == 0) {
+                final PersistentHashMap<Hash, TransactionOutput>[] roots = roots();
+                if (writes == wholeSetWrites) {
+                    return new UTXOSnapshot(roots, -1);
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * The set as of the last block passed to {@link #commit(int)} or {@link #commitSnapshot(int)}, with that
+     * block's height. Reading it takes no lock.
+     */
+    public UTXOSnapshot getCommittedSnapshot() {
+        return committed;
+    }
+
+    /**
+     * Replaces the content of the set with the state recovered from the journal in the given directory
+     * and keeps journaling into it.
+     *
+     * @return the height of the last recovered block or -1 if the journal was empty
+     */
+    public int open(Path directory) {
+        lockAll();
+        journalLock.lock();
+        try {
+            if (journal != null) {
+                journal.close();
+            }
+            journal = new UTXOJournal(directory);
+            pendingChanges.clear();
+            pendingClear = false;
+            final Map<Hash, TransactionOutput> recovered = new HashMap<>();
+            final int height = journal.recover(recovered);
+            final PersistentHashMap<Hash, TransactionOutput>[] roots = emptyRoots();
+            recovered.forEach((id, output) -> roots[stripeIndex(id)] = roots[stripeIndex(id)].with(id, output));
+            for (int i = 0; i < STRIPES; i++) {
+                UTXOs.set(i, roots[i]);
+            }
+            UTXOsByOwner.clear();
+            recovered.forEach(this::index);
+            committed = new UTXOSnapshot(roots, height);
+            return height;
+        } finally {
+            journalLock.unlock();
+            unlockAll();
+        }
+    }
+
+    // commits the single adds and removes since the last commit, e.g. after a failed reorganisation
+    public void commit(int height) {
+        commit(height, null);
+    }
+
+    /**
+     * Logs the changes of the block at the given height, its batch after the single adds and removes made since
+     * the last commit, and derives the {@link #getCommittedSnapshot() committed snapshot} from them.
+     * Without a journal the committed snapshot is the whole set.
+     *
+     * @param block changes of the block, already applied, or null
+     */
+    public void commit(int height, UTXOBatch block) {
+        final UTXOJournal journal;
+        final UTXOSnapshot snapshot;
+        final Map<Hash, TransactionOutput> changes;
+        final boolean cleared;
+        lockAll();
+        try {
+            journal = this.journal;
+            if (journal == null) {
+                committed = new UTXOSnapshot(roots(), height);
+                return;
+            }
+            changes = pendingChanges();
+            if (block != null) {
+                block.getSpent().forEach(output -> changes.put(output.getId(), null));
+                block.getCreated().forEach(output -> changes.put(output.getId(), output));
+            }
+            cleared = pendingClear;
+            snapshot = (cleared ? UTXOSnapshot.EMPTY : committed).with(changes, height);
+            committed = snapshot;
+            pendingChanges.clear();
+            pendingClear = false;
+            journalLock.lock();
+        } finally {
+            unlockAll();
+        }
+        // the log record and the journal snapshot are written while writers go on
+        try {
+            journal.append(height, cleared, changes);
+            if (journal.isSnapshotDue()) {
+                journal.snapshot(height, snapshot);
+            }
+        } finally {
+            journalLock.unlock();
+        }
     }
 
-    public void add(String id, TransactionOutput transactionOutput) {
-        readWriteLock.writeLock().lock();
+    /**
+     * Like {@link #commit(int, UTXOBatch)} for a reorganisation but writes the committed set as a snapshot.
+     * The tip height may drop below an earlier snapshot whose height recovery would skip later log records by.
+     *
+     * @param reverted batches of the disconnected blocks, newest first
+     * @param applied  batches of the connected blocks, oldest first
+     */
+    public void commitSnapshot(int height, List<UTXOBatch> reverted, List<UTXOBatch> applied) {
+        final UTXOJournal journal;
+        final UTXOSnapshot snapshot;
+        lockAll();
+        try {
+            journal = this.journal;
+            if (journal == null) {
+                committed = new UTXOSnapshot(roots(), height);
+                return;
+            }
+            // later changes of an output replace earlier ones, as when the batches are applied in order
+            final Map<Hash, TransactionOutput> changes = pendingChanges();
+            for (UTXOBatch batch : reverted) {
+                batch.getCreated().forEach(output -> changes.put(output.getId(), null));
+                batch.getSpent().forEach(output -> changes.put(output.getId(), output));
+            }
+            for (UTXOBatch batch : applied) {
+                batch.getSpent().forEach(output -> changes.put(output.getId(), null));
+                batch.getCreated().forEach(output -> changes.put(output.getId(), output));
+            }
+            snapshot = (pendingClear ? UTXOSnapshot.EMPTY : committed).with(changes, height);
+            committed = snapshot;
+            pendingChanges.clear();
+            pendingClear = false;
+            journalLock.lock();
+        } finally {
+            unlockAll();
+        }
         try {
-            UTXOs.put(id, transactionOutput);
+            journal.snapshot(height, snapshot);
         } finally {
-            readWriteLock.writeLock().unlock();
+            journalLock.unlock();
         }
     }
 
-    public TransactionOutput get(String id) throws TransactionException {
-        readWriteLock.readLock().lock();
+    // stops journaling, the content of the set is kept
+    public void close() {
+        lockAll();
+        journalLock.lock();
         try {
-            if (!UTXOs.containsKey(id)) {
-                logger.error("Could not find UTXO: {}", id);
-                throw new TransactionException(ErrorMessage.UTXO_NOT_FOUND);
+            if (journal != null) {
+                journal.close();
+                journal = null;
             }
-            return UTXOs.get(id);
+            pendingChanges.clear();
+            pendingClear = false;
         } finally {
-            readWriteLock.readLock().unlock();
+            journalLock.unlock();
+            unlockAll();
         }
     }
 
-    public boolean contains(String id) {
-        readWriteLock.readLock().lock();
+    public void add(Hash id, TransactionOutput transactionOutput) {
+        final ReentrantLock stripe = stripeOf(id);
+        Metrics.UTXO_SET.lockWrite(stripe);
         try {
-            return UTXOs.containsKey(id);
+            addLocked(id, transactionOutput);
+            if (journal != null) {
+                recordChange(id, transactionOutput);
+            }
         } finally {
-            readWriteLock.readLock().unlock();
+            stripe.unlock();
         }
     }
 
-    public Map<String, TransactionOutput> getAll() {
-        readWriteLock.readLock().lock();
+    /**
+     * Applies the changes of a block as one unit: while all stripes are locked the spent outputs are removed and
+     * the created ones added, so no other writer sees or interleaves with half of the block.
+     *
+     * @return false, without changing anything, if one of the spent outputs is not in the set
+     */
+    public boolean apply(UTXOBatch batch) {
+        lockAll();
         try {
-            return new HashMap<>(UTXOs);
+            for (TransactionOutput output : batch.getSpent()) {
+                if (!contains(output.getId())) {
+                    logger.warn("Could not apply batch, UTXO already spent: {}", output.getId());
+                    return false;
+                }
+            }
+            for (TransactionOutput output : batch.getSpent()) {
+                removeLocked(output.getId());
+            }
+            for (TransactionOutput output : batch.getCreated()) {
+                addLocked(output.getId(), output);
+            }
+            return true;
         } finally {
-            readWriteLock.readLock().unlock();
+            unlockAll();
         }
     }
 
-    public TransactionOutput remove(String id) {
-        readWriteLock.writeLock().lock();
+    // undoes an applied batch: drops the created outputs and restores the spent ones
+    public void revert(UTXOBatch batch) {
+        lockAll();
         try {
-            if (UTXOs.containsKey(id)) {
-                return UTXOs.remove(id);
+            for (TransactionOutput output : batch.getCreated()) {
+                removeLocked(output.getId());
+            }
+            for (TransactionOutput output : batch.getSpent()) {
+                addLocked(output.getId(), output);
             }
-            return null;
         } finally {
-            readWriteLock.writeLock().unlock();
+            unlockAll();
+        }
+    }
+
+    // sum of the unspent outputs sent to the given key
+    public float getBalance(PublicKey owner) {
+        return getBalance(KeyRegistry.getInstance().intern(owner));
+    }
+
+    public float getBalance(KeyHandle owner) {
+        final OwnedOutputs owned = UTXOsByOwner.get(owner);
+        if (owned == null) return 0f;
+        synchronized (owned) {
+            return (float) owned.balance;
+        }
+    }
+
+    // copy of the unspent outputs sent to the given key
+    public Map<Hash, TransactionOutput> getUTXOs(PublicKey owner) {
+        return getUTXOs(KeyRegistry.getInstance().intern(owner));
+    }
+
+    public Map<Hash, TransactionOutput> getUTXOs(KeyHandle owner) {
+        final OwnedOutputs owned = UTXOsByOwner.get(owner);
+        if (owned == null) return new LinkedHashMap<>();
+        synchronized (owned) {
+            return new LinkedHashMap<>(owned.outputs);
+        }
+    }
+
+    @Override
+    public TransactionOutput get(Hash id) throws TransactionException {
+        final TransactionOutput output = UTXOs.get(stripeIndex(id)).get(id);
+        if (output == null) {
+            logger.error("Could not find UTXO: {}", id);
+            throw new TransactionException(ErrorMessage.UTXO_NOT_FOUND);
+        }
+        return output;
+    }
+
+    public boolean contains(Hash id) {
+        return UTXOs.get(stripeIndex(id)).containsKey(id);
+    }
+
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            size += UTXOs.get(i).size();
+        }
+        return size;
+    }
+
+    // mutable copy of a snapshot of all outputs, read-only callers should use snapshot()
+    public Map<Hash, TransactionOutput> getAll() {
+        return new HashMap<>(snapshot());
+    }
+
+    public TransactionOutput remove(Hash id) {
+        final ReentrantLock stripe = stripeOf(id);
+        Metrics.UTXO_SET.lockWrite(stripe);
+        try {
+            final TransactionOutput removed = removeLocked(id);
+            if (removed != null && journal != null) {
+                recordChange(id, REMOVED);
+            }
+            return removed;
+        } finally {
+            stripe.unlock();
         }
     }
 
     public void clear() {
-        readWriteLock.writeLock().lock();
+        lockAll();
         try {
-            UTXOs.clear();
+            for (int i = 0; i < STRIPES; i++) {
+                UTXOs.set(i, PersistentHashMap.empty());
+            }
+            UTXOsByOwner.clear();
+            if (journal != null) {
+                pendingChanges.clear();
+                pendingClear = true;
+            }
         } finally {
-            readWriteLock.writeLock().unlock();
+            unlockAll();
+        }
+    }
+
+    // caller holds the stripe of the id
+    private void addLocked(Hash id, TransactionOutput transactionOutput) {
+        final int stripe = stripeIndex(id);
+        final PersistentHashMap<Hash, TransactionOutput> outputs = UTXOs.get(stripe);
+        final TransactionOutput previous = outputs.get(id);
+        UTXOs.set(stripe, outputs.with(id, transactionOutput));
+        if (previous != null) {
+            unindex(id, previous);
         }
+        index(id, transactionOutput);
+    }
+
+    // caller holds the stripe of the id
+    private TransactionOutput removeLocked(Hash id) {
+        final int stripe = stripeIndex(id);
+        final PersistentHashMap<Hash, TransactionOutput> outputs = UTXOs.get(stripe);
+        final TransactionOutput removed = outputs.get(id);
+        if (removed == null) {
+            return null;
+        }
+        UTXOs.set(stripe, outputs.without(id));
+        unindex(id, removed);
+        return removed;
+    }
+
+    /**
+     * Records a single add or remove for the next commit, caller holds the stripe of the id. A change back to the
+     * committed output drops the entry instead.
+     */
+    private void recordChange(Hash id, TransactionOutput output) {
+        if (!pendingClear && Objects.equals(committed.get(id), output == REMOVED ? null : output)) {
+            pendingChanges.remove(id);
+        } else {
+            pendingChanges.put(id, output);
+        }
+    }
+
+    // pending changes in journal form, a removal maps to null, called with all stripes locked
+    private Map<Hash, TransactionOutput> pendingChanges() {
+        final Map<Hash, TransactionOutput> changes = new LinkedHashMap<>();
+        pendingChanges.forEach((id, output) -> changes.put(id, output == REMOVED ? null : output));
+        return changes;
+    }
+
+    private ReentrantLock stripeOf(Hash id) {
+        return stripes[stripeIndex(id)];
+    }
+
+    private void lockAll() {
+        for (ReentrantLock stripe : stripes) {
+            Metrics.UTXO_SET.lockWrite(stripe);
+        }
+        wholeSetWrites++;
+    }
+
+    private void unlockAll() {
+        wholeSetWrites++;
+        for (int i = STRIPES - 1; i >= 0; i--) {
+            stripes[i].unlock();
+        }
+    }
+
+    // current stripes, consistent if all stripes are locked or no whole-set write ran meanwhile
+    private PersistentHashMap<Hash, TransactionOutput>[] roots() {
+        final PersistentHashMap<Hash, TransactionOutput>[] roots = newStripes();
+        for (int i = 0; i < STRIPES; i++) {
+            roots[i] = UTXOs.get(i);
+        }
+        return roots;
+    }
+
+    private static PersistentHashMap<Hash, TransactionOutput>[] emptyRoots() {
+        final PersistentHashMap<Hash, TransactionOutput>[] roots = newStripes();
+        Arrays.fill(roots, PersistentHashMap.empty());
+        return roots;
+    }
+
+    // generic arrays can't be created, the array only ever holds maps of outputs by id
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static PersistentHashMap<Hash, TransactionOutput>[] newStripes() {
+        return new PersistentHashMap[STRIPES];
+    }
+
+    private void index(Hash id, TransactionOutput output) {
+        if (output.getRecipientHandle() == null) return;
+        UTXOsByOwner.compute(output.getRecipientHandle(), (key, owned) -> {
+            final OwnedOutputs outputs = owned == null ? new OwnedOutputs() : owned;
+            synchronized (outputs) {
+                if (outputs.outputs.put(id, output) == null) {
+                    outputs.balance += output.getValue();
+                }
+            }
+            return outputs;
+        });
+    }
+
+    private void unindex(Hash id, TransactionOutput output) {
+        if (output.getRecipientHandle() == null) return;
+        UTXOsByOwner.computeIfPresent(output.getRecipientHandle(), (key, owned) -> {
+            synchronized (owned) {
+                if (owned.outputs.remove(id) != null) {
+                    owned.balance -= output.getValue();
+                }
+                return owned.outputs.isEmpty() ? null : owned;
+            }
+        });
+    }
+
+    // outputs of one recipient, guarded by its monitor, the balance is kept in double to limit drift
+    private static final class OwnedOutputs {
+        private final Map<Hash, TransactionOutput> outputs = new LinkedHashMap<>();
+        private double balance;
     }
 }
@@ -0,0 +1,164 @@
+package com.liquiduspro.singleton;
+
+import com.liquiduspro.crypto.KeyHandle;
+import com.liquiduspro.crypto.KeyRegistry;
+import com.liquiduspro.domain.transaction.TransactionOutput;
+import com.liquiduspro.util.Hash;
+import com.liquiduspro.util.PersistentHashMap;
+
+import java.security.PublicKey;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable point-in-time view of the {@link UTXOSet}, see {@link UTXOSet#snapshot()} and
+ * {@link UTXOSet#getCommittedSnapshot()}. It shares the {@link PersistentHashMap persistent maps} of the set's
+ * stripes, so taking one costs a copy of {@link UTXOSet#STRIPES} references and reading it takes no lock,
+ * while the set keeps changing.
+ * <br>
+ * {@link #with(TransactionOutput)} and {@link #without(Hash)} derive a changed view, e.g. to replay the
+ * transactions of a block, without touching the set or this snapshot.
+ *
+ * @author econlq
+ */
+public final class UTXOSnapshot extends AbstractMap<Hash, TransactionOutput> {
+    public static final UTXOSnapshot EMPTY = empty();
+    // stripe -> outputs whose id falls into the stripe, as in UTXOSet
+    private final PersistentHashMap<Hash, TransactionOutput>[] stripes;
+    private final int height;
+    private final int size;
+
+    UTXOSnapshot(final PersistentHashMap<Hash, TransactionOutput>[] stripes, final int height) {
+        this.stripes = stripes;
+        this.height = height;
+        int size = 0;
+        for (PersistentHashMap<Hash, TransactionOutput> stripe : stripes) {
+            size += stripe.size();
+        }
+        this.size = size;
+    }
+
+    private static UTXOSnapshot empty() {
+        final PersistentHashMap<Hash, TransactionOutput>[] stripes = UTXOSet.newStripes();
+        Arrays.fill(stripes, PersistentHashMap.empty());
+        return new UTXOSnapshot(stripes, -1);
+    }
+
+    /**
+     * @return the height of the block the snapshot was committed at, or -1 if it was not taken at a block boundary
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public TransactionOutput get(final Object id) {
+        return id instanceof Hash hash ? stripes[UTXOSet.stripeIndex(hash)].get(hash) : null;
+    }
+
+    @Override
+    public boolean containsKey(final Object id) {
+        return get(id) != null;
+    }
+
+    // view with the given output added
+    public UTXOSnapshot with(final TransactionOutput output) {
+        final int stripe = UTXOSet.stripeIndex(output.getId());
+        final PersistentHashMap<Hash, TransactionOutput> updated = stripes[stripe].with(output.getId(), output);
+        return updated == stripes[stripe] ? this : replace(stripe, updated);
+    }
+
+    // view without the output with the given id
+    public UTXOSnapshot without(final Hash id) {
+        final int stripe = UTXOSet.stripeIndex(id);
+        final PersistentHashMap<Hash, TransactionOutput> updated = stripes[stripe].without(id);
+        return updated == stripes[stripe] ? this : replace(stripe, updated);
+    }
+
+    // view with the given changes at the given height, a null output removes its id
+    UTXOSnapshot with(final Map<Hash, TransactionOutput> changes, final int height) {
+        final PersistentHashMap<Hash, TransactionOutput>[] changed = stripes.clone();
+        changes.forEach((id, output) -> {
+            final int stripe = UTXOSet.stripeIndex(id);
+            changed[stripe] = output == null ? changed[stripe].without(id) : changed[stripe].with(id, output);
+        });
+        return new UTXOSnapshot(changed, height);
+    }
+
+    /**
+     * Sum of the outputs sent to the given key. Unlike {@link UTXOSet#getBalance(KeyHandle)} there is no owner
+     * index, so this walks the whole snapshot.
+     */
+    public float getBalance(final PublicKey owner) {
+        return getBalance(KeyRegistry.getInstance().intern(owner));
+    }
+
+    public float getBalance(final KeyHandle owner) {
+        double balance = 0;
+        for (PersistentHashMap<Hash, TransactionOutput> stripe : stripes) {
+            for (TransactionOutput output : stripe.values()) {
+                if (owner.equals(output.getRecipientHandle())) {
+                    balance += output.getValue();
+                }
+            }
+        }
+        return (float) balance;
+    }
+
+    @Override
+    public void forEach(final BiConsumer<? super Hash, ? super TransactionOutput> action) {
+        for (PersistentHashMap<Hash, TransactionOutput> stripe : stripes) {
+            stripe.forEach(action);
+        }
+    }
+
+    @Override
+    public Set<Entry<Hash, TransactionOutput>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<Hash, TransactionOutput>> iterator() {
+                return new Iterator<>() {
+                    private int stripe;
+                    private Iterator<Entry<Hash, TransactionOutput>> entries = stripes[0].entrySet().iterator();
+
+                    @Override
+                    public boolean hasNext() {
+                        while (!entries.hasNext()) {
+                            if (stripe + 1 == stripes.length) return false;
+                            entries = stripes[++stripe].entrySet().iterator();
+                        }
+                        return true;
+                    }
+
+                    @Override
+                    public Entry<Hash, TransactionOutput> next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        return entries.next();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private UTXOSnapshot replace(final int stripe, final PersistentHashMap<Hash, TransactionOutput> updated) {
+        final PersistentHashMap<Hash, TransactionOutput>[] replaced = stripes.clone();
+        replaced[stripe] = updated;
+        return new UTXOSnapshot(replaced, height);
+    }
+}
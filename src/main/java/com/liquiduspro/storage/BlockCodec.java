@@ -0,0 +1,293 @@
+package com.liquiduspro.storage;
+
+import com.liquiduspro.crypto.KeyHandle;
+import com.liquiduspro.crypto.KeyRegistry;
+import com.liquiduspro.domain.Block;
+import com.liquiduspro.domain.BlockHeader;
+import com.liquiduspro.domain.transaction.Transaction;
+import com.liquiduspro.domain.transaction.TransactionInput;
+import com.liquiduspro.domain.transaction.TransactionOutput;
+import com.liquiduspro.util.Hash;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact, versioned binary encoding of a {@link Block} with all its transactions, including keys and signatures.
+ * <ul>
+ *     <li>Every encoded block starts with the {@link #VERSION} byte, decoding rejects unknown versions.</li>
+ *     <li>Counts and lengths are unsigned varints (7 bits per byte).</li>
+ *     <li>Hashes are a tag byte followed by their 32 raw bytes, {@code null} is the tag byte alone.
+ *     Short hex ids stored as UTF-8 text by earlier versions are still read.</li>
+ *     <li>Keys are their X.509 encoding, signatures their raw bytes, both length-prefixed.</li>
+ * </ul>
+ * See {@link BlockWriter}/{@link BlockReader} for streams of blocks.
+ *
+ * @author econlq
+ */
+public final class BlockCodec {
+    public static final byte VERSION = 1;
+    private static final byte NULL = 0;
+    private static final byte HASH = 1;
+    private static final byte TEXT = 2;
+
+    private BlockCodec() {
+    }
+
+    public static byte[] encode(final Block block) {
+        final ByteBuffer out = ByteBuffer.allocate(encodedSize(block));
+        encode(block, out);
+        return out.array();
+    }
+
+    // number of bytes encode(block, out) writes
+    public static int encodedSize(final Block block) {
+        int size = 1 + hashSize(block.getPreviousHash()) + 8 + varIntSize(block.getNonce().get())
+                + hashSize(block.getMerkleRoot()) + hashSize(block.getHash())
+                + varIntSize(block.getTransactions().size());
+        for (Transaction transaction : block.getTransactions()) {
+            size += transactionSize(transaction);
+        }
+        return size;
+    }
+
+    public static void encode(final Block block, final ByteBuffer out) {
+        out.put(VERSION);
+        writeHash(out, block.getPreviousHash());
+        out.putLong(block.getTimeStamp());
+        writeVarInt(out, block.getNonce().get());
+        writeHash(out, block.getMerkleRoot());
+        writeHash(out, block.getHash());
+        writeVarInt(out, block.getTransactions().size());
+        for (Transaction transaction : block.getTransactions()) {
+            writeTransaction(out, transaction);
+        }
+    }
+
+    // reads only the header fields at the start of an encoded block
+    public static BlockHeader decodeHeader(final ByteBuffer in) {
+        final byte version = in.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported block encoding version: " + version);
+        }
+        final Hash previousHash = readHash(in);
+        final long timeStamp = in.getLong();
+        final int nonce = readVarInt(in);
+        final Hash merkleRoot = readHash(in);
+        return new BlockHeader(previousHash, timeStamp, nonce, merkleRoot, readHash(in));
+    }
+
+    public static Block decode(final ByteBuffer in) {
+        final byte version = in.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported block encoding version: " + version);
+        }
+        final Hash previousHash = readHash(in);
+        final long timeStamp = in.getLong();
+        final int nonce = readVarInt(in);
+        final Hash merkleRoot = readHash(in);
+        final Hash hash = readHash(in);
+        final int count = readVarInt(in);
+        final List<Transaction> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            transactions.add(readTransaction(in));
+        }
+        return new Block(previousHash, timeStamp, nonce, merkleRoot, hash, transactions);
+    }
+
+    // number of bytes encode(transaction, out) writes
+    public static int encodedSize(final Transaction transaction) {
+        return transactionSize(transaction);
+    }
+
+    // a transaction on its own, encoded as within a block
+    public static void encode(final Transaction transaction, final ByteBuffer out) {
+        writeTransaction(out, transaction);
+    }
+
+    public static Transaction decodeTransaction(final ByteBuffer in) {
+        return readTransaction(in);
+    }
+
+    private static int transactionSize(final Transaction transaction) {
+        int size = keySize(transaction.getSenderHandle()) + keySize(transaction.getRecipientHandle()) + 4
+                + hashSize(transaction.getTransactionId()) + bytesSize(transaction.getSignature())
+                + varIntSize(transaction.getInputs().size()) + varIntSize(transaction.getOutputs().size());
+        for (TransactionInput input : transaction.getInputs()) {
+            size += hashSize(input.getTransactionOutputId()) + 1;
+            if (input.getUTXO() != null) {
+                size += outputSize(input.getUTXO());
+            }
+        }
+        for (TransactionOutput output : transaction.getOutputs()) {
+            size += outputSize(output);
+        }
+        return size;
+    }
+
+    private static void writeTransaction(final ByteBuffer out, final Transaction transaction) {
+        writeKey(out, transaction.getSenderHandle());
+        writeKey(out, transaction.getRecipientHandle());
+        out.putFloat(transaction.getValue());
+        writeHash(out, transaction.getTransactionId());
+        writeBytes(out, transaction.getSignature());
+        writeVarInt(out, transaction.getInputs().size());
+        for (TransactionInput input : transaction.getInputs()) {
+            writeHash(out, input.getTransactionOutputId());
+            out.put((byte) (input.getUTXO() != null ? 1 : 0));
+            if (input.getUTXO() != null) {
+                writeOutput(out, input.getUTXO());
+            }
+        }
+        writeVarInt(out, transaction.getOutputs().size());
+        for (TransactionOutput output : transaction.getOutputs()) {
+            writeOutput(out, output);
+        }
+    }
+
+    private static Transaction readTransaction(final ByteBuffer in) {
+        final KeyHandle sender = readKey(in);
+        final KeyHandle recipient = readKey(in);
+        final float value = in.getFloat();
+        final Hash transactionId = readHash(in);
+        final byte[] signature = readBytes(in);
+        final int inputCount = readVarInt(in);
+        final List<TransactionInput> inputs = new ArrayList<>(inputCount);
+        for (int i = 0; i < inputCount; i++) {
+            final TransactionInput input = new TransactionInput(readHash(in));
+            if (in.get() != 0) {
+                input.setUTXO(readOutput(in));
+            }
+            inputs.add(input);
+        }
+        final int outputCount = readVarInt(in);
+        final List<TransactionOutput> outputs = new ArrayList<>(outputCount);
+        for (int i = 0; i < outputCount; i++) {
+            outputs.add(readOutput(in));
+        }
+        return new Transaction(sender, recipient, value, inputs, outputs, transactionId, signature);
+    }
+
+    static int outputSize(final TransactionOutput output) {
+        return keySize(output.getRecipientHandle()) + 4 + hashSize(output.getParentTransactionId()) + hashSize(output.getId());
+    }
+
+    static void writeOutput(final ByteBuffer out, final TransactionOutput output) {
+        writeKey(out, output.getRecipientHandle());
+        out.putFloat(output.getValue());
+        writeHash(out, output.getParentTransactionId());
+        writeHash(out, output.getId());
+    }
+
+    static TransactionOutput readOutput(final ByteBuffer in) {
+        final KeyHandle recipient = readKey(in);
+        final float value = in.getFloat();
+        final Hash parentTransactionId = readHash(in);
+        final Hash id = readHash(in);
+        return new TransactionOutput(recipient, value, parentTransactionId, id);
+    }
+
+    private static int keySize(final KeyHandle key) {
+        return bytesSize(key == null ? null : key.getEncoded());
+    }
+
+    private static void writeKey(final ByteBuffer out, final KeyHandle key) {
+        writeBytes(out, key == null ? null : key.getEncoded());
+    }
+
+    // known keys are not decoded again, every block read shares the registry's key instances
+    private static KeyHandle readKey(final ByteBuffer in) {
+        return KeyRegistry.getInstance().intern(readBytes(in));
+    }
+
+    static int hashSize(final Hash value) {
+        return value == null ? 1 : 1 + Hash.LENGTH;
+    }
+
+    static void writeHash(final ByteBuffer out, final Hash value) {
+        if (value == null) {
+            out.put(NULL);
+        } else {
+            out.put(HASH);
+            value.write(out);
+        }
+    }
+
+    static Hash readHash(final ByteBuffer in) {
+        final byte tag = in.get();
+        switch (tag) {
+            case NULL:
+                return null;
+            case HASH:
+                return Hash.read(in);
+            case TEXT:
+                // short hex ids such as "0" written before ids were binary
+                final byte[] bytes = new byte[readVarInt(in)];
+                in.get(bytes);
+                return Hash.fromHex(new String(bytes, StandardCharsets.UTF_8));
+            default:
+                throw new IllegalArgumentException("Unknown hash tag: " + tag);
+        }
+    }
+
+    private static int bytesSize(final byte[] value) {
+        return value == null ? 1 : varIntSize(value.length + 1) + value.length;
+    }
+
+    // length + 1 as varint, 0 stands for null
+    private static void writeBytes(final ByteBuffer out, final byte[] value) {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        writeVarInt(out, value.length + 1);
+        out.put(value);
+    }
+
+    private static byte[] readBytes(final ByteBuffer in) {
+        final int length = readVarInt(in) - 1;
+        if (length < 0) return null;
+        final byte[] bytes = new byte[length];
+        in.get(bytes);
+        return bytes;
+    }
+
+    static int varIntSize(final int value) {
+        int size = 1;
+        for (int v = value >>> 7; v != 0; v >>>= 7) {
+            size++;
+        }
+        return size;
+    }
+
+    static void writeVarInt(final ByteBuffer out, final int value) {
+        int v = value;
+        while ((v & ~0x7f) != 0) {
+            out.put((byte) ((v & 0x7f) | 0x80));
+            v >>>= 7;
+        }
+        out.put((byte) v);
+    }
+
+    static int readVarInt(final ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final byte b = in.get();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    // true if a complete varint is available, leaves the position unchanged
+    static boolean hasVarInt(final ByteBuffer in) {
+        for (int i = in.position(); i < in.limit() && i < in.position() + 5; i++) {
+            if ((in.get(i) & 0x80) == 0) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,84 @@
+package com.liquiduspro.storage;
+
+import com.liquiduspro.domain.Block;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads the blocks written by a {@link BlockWriter} from a channel one at a time.
+ *
+ * @author econlq
+ */
+public final class BlockReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private final ReadableByteChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private boolean endOfStream;
+
+    public BlockReader(final ReadableByteChannel channel) throws IOException {
+        this.channel = channel;
+        buffer.flip();
+        if (!fill(5)) {
+            throw new EOFException("Missing block stream header");
+        }
+        if (buffer.getInt() != BlockWriter.MAGIC) {
+            throw new IOException("Not a block stream");
+        }
+        final byte version = buffer.get();
+        if (version != BlockCodec.VERSION) {
+            throw new IOException("Unsupported block stream version: " + version);
+        }
+    }
+
+    /**
+     * @return the next block or null at the end of the stream
+     */
+    public Block read() throws IOException {
+        final ByteBuffer record = readRecord();
+        return record == null ? null : BlockCodec.decode(record);
+    }
+
+    /**
+     * @return the next encoded block, positioned at its version byte, or null at the end of the stream.
+     * The buffer is only valid until the next call.
+     */
+    public ByteBuffer readRecord() throws IOException {
+        while (!BlockCodec.hasVarInt(buffer)) {
+            if (!fill(buffer.remaining() + 1)) {
+                if (buffer.hasRemaining()) throw new EOFException("Truncated block record");
+                return null;
+            }
+        }
+        final int start = buffer.position();
+        final int size = BlockCodec.readVarInt(buffer);
+        if (!fill(size)) {
+            buffer.position(start);
+            throw new EOFException("Truncated block record");
+        }
+        final ByteBuffer record = buffer.slice(buffer.position(), size);
+        buffer.position(buffer.position() + size);
+        return record;
+    }
+
+    // makes sure at least the given number of bytes are buffered, false if the stream ends first
+    private boolean fill(final int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) return true;
+        if (bytes > buffer.capacity()) {
+            final ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(bytes, buffer.capacity() * 2));
+            larger.put(buffer);
+            buffer = larger;
+        } else {
+            buffer.compact();
+        }
+        while (buffer.position() < bytes && !endOfStream) {
+            if (channel.read(buffer) < 0) {
+                endOfStream = true;
+            }
+        }
+        buffer.flip();
+        return buffer.remaining() >= bytes;
+    }
+}
@@ -0,0 +1,34 @@
+package com.liquiduspro.storage;
+
+import com.liquiduspro.domain.Block;
+import com.liquiduspro.domain.BlockHeader;
+import com.liquiduspro.util.Hash;
+
+/**
+ * Append-mostly storage of the blocks of a {@link com.liquiduspro.singleton.Blockchain}, addressed by height.
+ * Implementations are not thread-safe, the blockchain guards them with its read/write lock.
+ *
+ * @author econlq
+ */
+public interface BlockStore extends AutoCloseable {
+
+    void append(Block block);
+
+    Block get(int height);
+
+    // header of the block at the given height, stores that can read it without the transactions should
+    default BlockHeader getHeader(int height) {
+        return get(height).getHeader();
+    }
+
+    // drops the blocks from the given height up, e.g. when the chain switches to another branch
+    void truncate(int size);
+
+    int size();
+
+    // hash of the block at the highest height or null if the store is empty
+    Hash getLatestBlockHash();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,67 @@
+package com.liquiduspro.storage;
+
+import com.liquiduspro.domain.Block;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Streams blocks to a channel: a {@code [int magic][byte version]} header followed by
+ * {@code [varint length][encoded block]} records, see {@link BlockCodec}.
+ * Blocks are encoded straight into a reusable direct buffer, the chain is never held as one document.
+ *
+ * @author econlq
+ */
+public final class BlockWriter implements Closeable {
+    public static final int MAGIC = 0x4E424348; // "NBCH"
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long bytesWritten;
+
+    public BlockWriter(final WritableByteChannel channel) throws IOException {
+        this.channel = channel;
+        buffer.putInt(MAGIC).put(BlockCodec.VERSION);
+    }
+
+    public void write(final Block block) throws IOException {
+        final int size = BlockCodec.encodedSize(block);
+        final int recordSize = BlockCodec.varIntSize(size) + size;
+        if (recordSize > buffer.remaining()) {
+            flush();
+        }
+        if (recordSize > buffer.capacity()) {
+            // larger than the buffer, write it on its own
+            final ByteBuffer record = ByteBuffer.allocate(recordSize);
+            BlockCodec.writeVarInt(record, size);
+            BlockCodec.encode(block, record);
+            drain(record.flip());
+            return;
+        }
+        BlockCodec.writeVarInt(buffer, size);
+        BlockCodec.encode(block, buffer);
+    }
+
+    public void flush() throws IOException {
+        drain(buffer.flip());
+        buffer.clear();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    // flushes the buffered blocks, the channel is left open
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    private void drain(final ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            bytesWritten += channel.write(source);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.liquiduspro.storage;
+
+import com.liquiduspro.domain.Block;
+import com.liquiduspro.domain.BlockHeader;
+import com.liquiduspro.metrics.Metrics;
+import com.liquiduspro.util.Hash;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link BlockStore} that keeps only the {@link BlockHeader headers} on the heap and reads blocks with their
+ * transactions from a backing store on demand. The most recently used blocks stay in an LRU cache of a fixed
+ * number of blocks, so the heap no longer grows with the bodies of the chain. Hits, misses and evictions are
+ * recorded in {@link Metrics#BLOCK_CACHE}.
+ * <br>
+ * Readers of the blockchain share its read lock, so lookups in the cache are synchronized on the cache.
+ *
+ * @author econlq
+ */
+public final class CachedBlockStore implements BlockStore {
+    private final BlockStore backing;
+    private final int capacity;
+    private final List<BlockHeader> headers;
+    // height -> block, in access order
+    private final Map<Integer, Block> blocks;
+
+    public CachedBlockStore(final BlockStore backing, final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+        }
+        this.backing = backing;
+        this.capacity = capacity;
+        this.headers = new ArrayList<>(backing.size());
+        for (int height = 0; height < backing.size(); height++) {
+            headers.add(backing.getHeader(height));
+        }
+        this.blocks = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Integer, Block> eldest) {
+                if (size() > CachedBlockStore.this.capacity) {
+                    Metrics.BLOCK_CACHE.recordEviction();
+                    return true;
+                }
+                return false;
+            }
+        };
+        Metrics.BLOCK_CACHE.setSize(this::cachedBlocks, capacity);
+    }
+
+    @Override
+    public void append(final Block block) {
+        backing.append(block);
+        headers.add(block.getHeader());
+        synchronized (blocks) {
+            blocks.put(headers.size() - 1, block);
+        }
+    }
+
+    @Override
+    public Block get(final int height) {
+        synchronized (blocks) {
+            final Block block = blocks.get(height);
+            if (block != null) {
+                Metrics.BLOCK_CACHE.recordHit();
+                return block;
+            }
+        }
+        Metrics.BLOCK_CACHE.recordMiss();
+        // decoded outside the lock, two readers missing the same block both decode it
+        final Block block = backing.get(height);
+        synchronized (blocks) {
+            final Block cached = blocks.putIfAbsent(height, block);
+            return cached != null ? cached : block;
+        }
+    }
+
+    @Override
+    public BlockHeader getHeader(final int height) {
+        return headers.get(height);
+    }
+
+    @Override
+    public void truncate(final int size) {
+        backing.truncate(size);
+        headers.subList(size, headers.size()).clear();
+        synchronized (blocks) {
+            blocks.keySet().removeIf(height -> height >= size);
+        }
+    }
+
+    @Override
+    public int size() {
+        return headers.size();
+    }
+
+    @Override
+    public Hash getLatestBlockHash() {
+        return headers.isEmpty() ? null : headers.get(headers.size() - 1).hash();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private long cachedBlocks() {
+        synchronized (blocks) {
+            return blocks.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (blocks) {
+            blocks.clear();
+        }
+        backing.close();
+    }
+}
@@ -0,0 +1,72 @@
+package com.liquiduspro.storage;
+
+import com.liquiduspro.domain.BlockHeader;
+
+import java.util.Arrays;
+
+/**
+ * Append-only list of block headers with a single writer and lock-free readers. Headers live in chunks of
+ * {@link ChainView#CHUNK_SIZE}, the writer {@link #append appends} and {@link #truncate truncates} without readers
+ * noticing and makes the result visible with one volatile write in {@link #publish()}. Readers take the latest
+ * {@link ChainView} with {@link #view()}, which costs a volatile read and copies nothing.
+ * <br>
+ * A truncation copies the chunk it cuts into and the chunk directory, so views published earlier keep their headers.
+ * Not thread-safe for writers, the blockchain calls the writing methods with its write lock held.
+ *
+ * @author econlq
+ */
+public final class ChainLog {
+    private BlockHeader[][] chunks = new BlockHeader[16][];
+    private int size;
+    private volatile ChainView published = ChainView.EMPTY;
+
+    public ChainView view() {
+        return published;
+    }
+
+    // visible to readers after the next publish
+    public void append(final BlockHeader header) {
+        final int chunk = size >>> ChainView.CHUNK_BITS;
+        if (chunk == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        }
+        if (chunks[chunk] == null) {
+            chunks[chunk] = new BlockHeader[ChainView.CHUNK_SIZE];
+        }
+        chunks[chunk][size & ChainView.CHUNK_MASK] = header;
+        size++;
+    }
+
+    // drops the headers from the given height up, visible to readers after the next publish
+    public void truncate(final int size) {
+        if (size >= this.size) return;
+        final BlockHeader[][] truncated = Arrays.copyOf(chunks, chunks.length);
+        final int chunk = size >>> ChainView.CHUNK_BITS;
+        // views published earlier may still read the slots above the new size
+        if ((size & ChainView.CHUNK_MASK) != 0) {
+            final BlockHeader[] copy = new BlockHeader[ChainView.CHUNK_SIZE];
+            System.arraycopy(chunks[chunk], 0, copy, 0, size & ChainView.CHUNK_MASK);
+            truncated[chunk] = copy;
+            Arrays.fill(truncated, chunk + 1, truncated.length, null);
+        } else {
+            Arrays.fill(truncated, chunk, truncated.length, null);
+        }
+        chunks = truncated;
+        this.size = size;
+    }
+
+    public void clear() {
+        truncate(0);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // makes the appends and truncations so far visible to readers at once
+    public ChainView publish() {
+        final ChainView view = new ChainView(chunks, size);
+        published = view;
+        return view;
+    }
+}
@@ -0,0 +1,46 @@
+package com.liquiduspro.storage;
+
+import com.liquiduspro.domain.BlockHeader;
+import com.liquiduspro.util.Hash;
+
+import java.util.AbstractList;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Immutable view of the headers of a chain up to a published height, handed out by a {@link ChainLog}.
+ * It shares the chunks of the log instead of copying them and reads them without locking: the log only writes
+ * slots above every published size, and a truncated chunk is copied before it is written again, so the headers a
+ * view covers never change, even when the chain later switches to another branch.
+ *
+ * @author econlq
+ */
+public final class ChainView extends AbstractList<BlockHeader> implements RandomAccess {
+    static final int CHUNK_BITS = 10;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    public static final ChainView EMPTY = new ChainView(new BlockHeader[0][], 0);
+    private final BlockHeader[][] chunks;
+    private final int size;
+
+    ChainView(final BlockHeader[][] chunks, final int size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    @Override
+    public BlockHeader get(final int height) {
+        Objects.checkIndex(height, size);
+        return chunks[height >>> CHUNK_BITS][height & CHUNK_MASK];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // hash of the block at the highest height or null if the view is empty
+    public Hash getLatestBlockHash() {
+        return size == 0 ? null : get(size - 1).hash();
+    }
+}
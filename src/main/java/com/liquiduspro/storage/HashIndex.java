@@ -0,0 +1,142 @@
+package com.liquiduspro.storage;
+
+import com.liquiduspro.util.Hash;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from {@link Hash} to a non-negative {@code long}, e.g. a block height or a packed
+ * (height, position) pair.
+ * <br>
+ * Keys are stored inline as four {@code long} words per slot and values in a parallel {@code long[]},
+ * so an entry costs 40 bytes and no object, boxed or otherwise. Lookups probe linearly from the
+ * key's hash, the table doubles at 75% load. Not thread-safe.
+ *
+ * @author econlq
+ */
+public final class HashIndex {
+    public static final long NOT_FOUND = -1L;
+    private static final int WORDS = 4;
+    private static final int INITIAL_CAPACITY = 64;
+    private long[] keys;
+    // NOT_FOUND marks a free slot
+    private long[] values;
+    private int size;
+
+    public HashIndex() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Maps the key to the value, replacing a previous mapping.
+     *
+     * @param value must not be negative
+     */
+    public void put(final Hash key, final long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must not be negative: " + value);
+        }
+        if ((size + 1) * 4L > values.length * 3L) {
+            resize(values.length * 2);
+        }
+        final int slot = find(keys, values, key);
+        if (values[slot] == NOT_FOUND) {
+            size++;
+            for (int i = 0; i < WORDS; i++) {
+                keys[slot * WORDS + i] = key.word(i);
+            }
+        }
+        values[slot] = value;
+    }
+
+    // value of the key or NOT_FOUND
+    public long get(final Hash key) {
+        return values[find(keys, values, key)];
+    }
+
+    /**
+     * Removes the mapping of the key, later entries of its probe run are shifted back so lookups need no tombstones.
+     *
+     * @return the removed value or NOT_FOUND
+     */
+    public long remove(final Hash key) {
+        final int mask = values.length - 1;
+        int hole = find(keys, values, key);
+        final long removed = values[hole];
+        if (removed == NOT_FOUND) return NOT_FOUND;
+        for (int next = (hole + 1) & mask; values[next] != NOT_FOUND; next = (next + 1) & mask) {
+            final int home = spread(hashOf(keys, next)) & mask;
+            // the entry may move back if the hole lies between its home slot and its slot
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                System.arraycopy(keys, next * WORDS, keys, hole * WORDS, WORDS);
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        values[hole] = NOT_FOUND;
+        size--;
+        return removed;
+    }
+
+    public boolean contains(final Hash key) {
+        return get(key) != NOT_FOUND;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    // slot holding the key or the free slot where it belongs
+    private static int find(final long[] keys, final long[] values, final Hash key) {
+        final int mask = values.length - 1;
+        int slot = spread(key.hashCode()) & mask;
+        while (values[slot] != NOT_FOUND && !matches(keys, slot, key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static boolean matches(final long[] keys, final int slot, final Hash key) {
+        final int offset = slot * WORDS;
+        return keys[offset] == key.word(0) && keys[offset + 1] == key.word(1)
+                && keys[offset + 2] == key.word(2) && keys[offset + 3] == key.word(3);
+    }
+
+    // same as Hash#hashCode of the key stored in the slot
+    private static int hashOf(final long[] keys, final int slot) {
+        final int offset = slot * WORDS;
+        return Long.hashCode(keys[offset] ^ keys[offset + 1] ^ keys[offset + 2] ^ keys[offset + 3]);
+    }
+
+    private static int spread(final int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private void allocate(final int capacity) {
+        keys = new long[capacity * WORDS];
+        values = new long[capacity];
+        Arrays.fill(values, NOT_FOUND);
+        size = 0;
+    }
+
+    private void resize(final int capacity) {
+        final long[] oldKeys = keys;
+        final long[] oldValues = values;
+        allocate(capacity);
+        for (int slot = 0; slot < oldValues.length; slot++) {
+            if (oldValues[slot] == NOT_FOUND) continue;
+            final int offset = slot * WORDS;
+            int target = spread(hashOf(oldKeys, slot)) & (capacity - 1);
+            while (values[target] != NOT_FOUND) {
+                target = (target + 1) & (capacity - 1);
+            }
+            System.arraycopy(oldKeys, offset, keys, target * WORDS, WORDS);
+            values[target] = oldValues[slot];
+            size++;
+        }
+    }
+}
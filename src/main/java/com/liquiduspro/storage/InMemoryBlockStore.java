@@ -0,0 +1,44 @@
+package com.liquiduspro.storage;
+
+import com.liquiduspro.domain.Block;
+import com.liquiduspro.util.Hash;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps all blocks on the heap, nothing survives a restart.
+ */
+public final class InMemoryBlockStore implements BlockStore {
+    private final List<Block> chain = new ArrayList<>();
+
+    @Override
+    public void append(Block block) {
+        chain.add(block);
+    }
+
+    @Override
+    public Block get(int height) {
+        return chain.get(height);
+    }
+
+    @Override
+    public void truncate(int size) {
+        chain.subList(size, chain.size()).clear();
+    }
+
+    @Override
+    public int size() {
+        return chain.size();
+    }
+
+    @Override
+    public Hash getLatestBlockHash() {
+        return chain.isEmpty() ? null : chain.get(chain.size() - 1).getHash();
+    }
+
+    @Override
+    public void close() {
+        chain.clear();
+    }
+}
@@ -0,0 +1,225 @@
+package com.liquiduspro.storage;
+
+import com.liquiduspro.domain.Block;
+import com.liquiduspro.domain.BlockHeader;
+import com.liquiduspro.util.Hash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Disk-backed {@link BlockStore} on memory-mapped files.
+ * <ul>
+ *     <li>{@code segment-NNNNN.dat}: append-only segments of {@code [int length][encoded block]} records,
+ *     a new segment is started when the current one is full.</li>
+ *     <li>{@code blocks.idx}: {@code [int magic][int count]} followed by one {@code [int segment][int offset]}
+ *     entry per height.</li>
+ * </ul>
+ * A record is written and forced before its index entry, the count is bumped last, so a crash
+ * never exposes a partially written block. {@link #truncate(int)} only lowers the count. Opening a store only maps the files and reads the index header,
+ * the chain is not replayed.
+ *
+ * @author econlq
+ */
+public final class MappedBlockStore implements BlockStore {
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    private static final Logger logger = LoggerFactory.getLogger(MappedBlockStore.class);
+    private static final String INDEX_FILE = "blocks.idx";
+    private static final int INDEX_MAGIC = 0x4E424958; // "NBIX"
+    private static final int INDEX_HEADER = 8;
+    private static final int INDEX_ENTRY = 8;
+    private static final int INITIAL_INDEX_ENTRIES = 1 << 16;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private MappedByteBuffer index;
+    private int count;
+    private int writeSegment;
+    private int writePosition;
+    private Hash latestBlockHash;
+
+    public MappedBlockStore(final Path directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public MappedBlockStore(final Path directory, final int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(directory);
+            openIndex();
+            openSegments();
+        } catch (IOException e) {
+            logger.warn("Error while opening block store {}: {}", directory, e.toString());
+            throw new RuntimeException(e);
+        }
+        positionAfterLast();
+        logger.info("Opened block store {} with {} blocks", directory, count);
+    }
+
+    @Override
+    public void append(final Block block) {
+        final byte[] record = BlockCodec.encode(block);
+        final int length = 4 + record.length;
+        try {
+            if (segments.isEmpty() || writePosition + length > segments.get(writeSegment).capacity()) {
+                startSegment(Math.max(segmentSize, length));
+            }
+            ensureIndexCapacity(count + 1);
+        } catch (IOException e) {
+            logger.warn("Error while growing block store {}: {}", directory, e.toString());
+            throw new RuntimeException(e);
+        }
+        final MappedByteBuffer segment = segments.get(writeSegment);
+        segment.putInt(writePosition, record.length);
+        segment.put(writePosition + 4, record);
+        segment.force(writePosition, length);
+
+        final int entry = entryPosition(count);
+        index.putInt(entry, writeSegment);
+        index.putInt(entry + 4, writePosition);
+        index.force(entry, INDEX_ENTRY);
+        index.putInt(4, count + 1); // commit point
+        index.force(4, 4);
+
+        count++;
+        writePosition += length;
+        latestBlockHash = block.getHash();
+    }
+
+    @Override
+    public Block get(final int height) {
+        return BlockCodec.decode(record(height));
+    }
+
+    // decodes only the header at the start of the record
+    @Override
+    public BlockHeader getHeader(final int height) {
+        return BlockCodec.decodeHeader(record(height));
+    }
+
+    /**
+     * Lowers the committed count, records above it are overwritten by later appends.
+     */
+    @Override
+    public void truncate(final int size) {
+        if (size < 0 || size > count) {
+            throw new IndexOutOfBoundsException("Size " + size + " out of bounds for length " + count);
+        }
+        index.putInt(4, size); // commit point
+        index.force(4, 4);
+        count = size;
+        positionAfterLast();
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public Hash getLatestBlockHash() {
+        return latestBlockHash;
+    }
+
+    @Override
+    public void close() {
+        // mappings are released by the GC, make sure everything written is on disk
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        index.force();
+        segments.clear();
+    }
+
+    private ByteBuffer record(final int height) {
+        if (height < 0 || height >= count) {
+            throw new IndexOutOfBoundsException("Height " + height + " out of bounds for length " + count);
+        }
+        final int entry = entryPosition(height);
+        final MappedByteBuffer segment = segments.get(index.getInt(entry));
+        final int offset = index.getInt(entry + 4);
+        return segment.slice(offset + 4, segment.getInt(offset));
+    }
+
+    // moves the write position behind the last committed record
+    private void positionAfterLast() {
+        if (count > 0) {
+            final int segment = index.getInt(entryPosition(count - 1));
+            final int offset = index.getInt(entryPosition(count - 1) + 4);
+            writeSegment = segment;
+            writePosition = offset + 4 + segments.get(segment).getInt(offset);
+            latestBlockHash = getHeader(count - 1).hash();
+        } else {
+            writeSegment = 0;
+            writePosition = 0;
+            latestBlockHash = null;
+        }
+    }
+
+    private static int entryPosition(final int height) {
+        return INDEX_HEADER + height * INDEX_ENTRY;
+    }
+
+    private Path segmentPath(final int segment) {
+        return directory.resolve(String.format("segment-%05d.dat", segment));
+    }
+
+    private void openIndex() throws IOException {
+        final Path path = directory.resolve(INDEX_FILE);
+        final boolean exists = Files.exists(path) && Files.size(path) >= INDEX_HEADER;
+        final long size = exists ? Files.size(path) : entryPosition(INITIAL_INDEX_ENTRIES);
+        index = map(path, size);
+        if (!exists) {
+            index.putInt(0, INDEX_MAGIC);
+            index.putInt(4, 0);
+            index.force();
+        } else if (index.getInt(0) != INDEX_MAGIC) {
+            throw new IOException("Not a block store index: " + path);
+        }
+        count = index.getInt(4);
+    }
+
+    private void openSegments() throws IOException {
+        for (int segment = 0; Files.exists(segmentPath(segment)); segment++) {
+            segments.add(map(segmentPath(segment), Files.size(segmentPath(segment))));
+        }
+    }
+
+    private void startSegment(final int size) throws IOException {
+        // segments after the last indexed record are leftovers of an interrupted append and get reused
+        final int segment = segments.isEmpty() ? 0 : writeSegment + 1;
+        final MappedByteBuffer buffer = map(segmentPath(segment), size);
+        if (segment < segments.size()) {
+            segments.set(segment, buffer);
+        } else {
+            segments.add(buffer);
+        }
+        writeSegment = segment;
+        writePosition = 0;
+    }
+
+    private void ensureIndexCapacity(final int entries) throws IOException {
+        if (entryPosition(entries) > index.capacity()) {
+            index.force();
+            index = map(directory.resolve(INDEX_FILE), (long) index.capacity() * 2);
+        }
+    }
+
+    private static MappedByteBuffer map(final Path path, final long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.liquiduspro.storage;
+
+import com.liquiduspro.domain.transaction.TransactionOutput;
+import com.liquiduspro.util.Hash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Durable state of the {@link com.liquiduspro.singleton.UTXOSet}: a compact snapshot plus a write-ahead log
+ * of the changes of every block since that snapshot.
+ * <ul>
+ *     <li>{@code utxo.snapshot}: {@code [int magic][int generation][int height][int count]} followed by the outputs.
+ *     It is written to a temporary file and atomically moved into place.</li>
+ *     <li>{@code utxo.wal}: {@code [int length][int crc32][payload]} records, the payload being
+ *     {@code [int generation][int height][byte cleared][int count]} followed by the changes. A change is an id
+ *     with the added output, or with no output for a removal.</li>
+ * </ul>
+ * Every snapshot starts a new generation and records are written with the generation of the latest snapshot.
+ * Recovery loads the snapshot and replays only the log records of its generation, so records left over from
+ * before a snapshot (crash between moving the snapshot into place and truncating the log) are ignored even if
+ * the snapshot is at a lower height after a reorganisation. A torn record at the end of the log (crash during
+ * append) fails its checksum and is cut off.
+ *
+ * @author econlq
+ */
+public final class UTXOJournal implements AutoCloseable {
+    // number of logged blocks after which a new snapshot is written and the log is truncated
+    public static final int SNAPSHOT_INTERVAL = 100;
+    private static final Logger logger = LoggerFactory.getLogger(UTXOJournal.class);
+    private static final String SNAPSHOT_FILE = "utxo.snapshot";
+    private static final String LOG_FILE = "utxo.wal";
+    private static final int SNAPSHOT_MAGIC = 0x4E425532; // "NBU2"
+    private static final int NO_HEIGHT = -1;
+    private static final int SNAPSHOT_BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final FileChannel log;
+    // generation of the latest snapshot, 0 before the first one
+    private int generation;
+    private int recordsSinceSnapshot;
+
+    public UTXOJournal(final Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+            this.log = FileChannel.open(directory.resolve(LOG_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            logger.warn("Error while opening UTXO journal {}: {}", directory, e.toString());
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Loads the latest snapshot and the log tail into the given map, must be called before anything is appended.
+     *
+     * @return the height of the last recovered block or -1 if there was nothing to recover
+     */
+    public int recover(final Map<Hash, TransactionOutput> utxos) {
+        try {
+            final int snapshotHeight = readSnapshot(utxos);
+            final int height = replayLog(utxos, snapshotHeight);
+            logger.info("Recovered {} UTXOs up to block #{} ({} logged blocks replayed)", utxos.size(), height, recordsSinceSnapshot);
+            return height;
+        } catch (IOException e) {
+            logger.warn("Error while recovering UTXO journal {}: {}", directory, e.toString());
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Logs the changes of one block and forces them to disk.
+     *
+     * @param cleared true if the set was cleared before the changes were applied
+     * @param changes added outputs by id, a {@code null} value marks a removed id
+     */
+    public void append(final int height, final boolean cleared, final Map<Hash, TransactionOutput> changes) {
+        int size = 4 + 4 + 1 + 4;
+        for (Map.Entry<Hash, TransactionOutput> change : changes.entrySet()) {
+            size += BlockCodec.hashSize(change.getKey()) + 1
+                    + (change.getValue() != null ? BlockCodec.outputSize(change.getValue()) : 0);
+        }
+        final ByteBuffer record = ByteBuffer.allocate(8 + size);
+        record.position(8);
+        record.putInt(generation);
+        record.putInt(height);
+        record.put((byte) (cleared ? 1 : 0));
+        record.putInt(changes.size());
+        for (Map.Entry<Hash, TransactionOutput> change : changes.entrySet()) {
+            BlockCodec.writeHash(record, change.getKey());
+            record.put((byte) (change.getValue() != null ? 1 : 0));
+            if (change.getValue() != null) {
+                BlockCodec.writeOutput(record, change.getValue());
+            }
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(record.array(), 8, size);
+        record.putInt(0, size).putInt(4, (int) crc.getValue()).flip();
+        try {
+            log.position(log.size());
+            while (record.hasRemaining()) {
+                log.write(record);
+            }
+            log.force(false);
+        } catch (IOException e) {
+            logger.warn("Error while appending to UTXO journal {}: {}", directory, e.toString());
+            throw new RuntimeException(e);
+        }
+        recordsSinceSnapshot++;
+    }
+
+    public boolean isSnapshotDue() {
+        return recordsSinceSnapshot >= SNAPSHOT_INTERVAL;
+    }
+
+    /**
+     * Writes the whole set as the new snapshot at the given height, which starts a new generation, and truncates
+     * the log.
+     */
+    public void snapshot(final int height, final Map<Hash, TransactionOutput> utxos) {
+        final Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        final Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        final int next = generation + 1;
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                final ByteBuffer buffer = ByteBuffer.allocateDirect(SNAPSHOT_BUFFER_SIZE);
+                buffer.putInt(SNAPSHOT_MAGIC).putInt(next).putInt(height).putInt(utxos.size());
+                for (TransactionOutput output : utxos.values()) {
+                    final int size = BlockCodec.outputSize(output);
+                    if (size > buffer.remaining()) {
+                        write(channel, buffer);
+                    }
+                    if (size > buffer.capacity()) {
+                        final ByteBuffer large = ByteBuffer.allocate(size);
+                        BlockCodec.writeOutput(large, output);
+                        write(channel, large);
+                        continue;
+                    }
+                    BlockCodec.writeOutput(buffer, output);
+                }
+                write(channel, buffer);
+                channel.force(true);
+            }
+            Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // records of older generations are ignored by recovery from now on
+            generation = next;
+            log.truncate(0);
+            log.force(true);
+            recordsSinceSnapshot = 0;
+            logger.info("Wrote UTXO snapshot of {} outputs at block #{}", utxos.size(), height);
+        } catch (IOException e) {
+            logger.warn("Error while writing UTXO snapshot {}: {}", snapshot, e.toString());
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            log.close();
+        } catch (IOException e) {
+            logger.warn("Error while closing UTXO journal {}: {}", directory, e.toString());
+        }
+    }
+
+    // writes and clears the buffer
+    private static void write(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private int readSnapshot(final Map<Hash, TransactionOutput> utxos) throws IOException {
+        final Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(snapshot)) {
+            return NO_HEIGHT;
+        }
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            final ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a UTXO snapshot: " + snapshot);
+            }
+            generation = in.getInt();
+            final int height = in.getInt();
+            final int count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                final TransactionOutput output = BlockCodec.readOutput(in);
+                utxos.put(output.getId(), output);
+            }
+            return height;
+        }
+    }
+
+    private int replayLog(final Map<Hash, TransactionOutput> utxos, final int snapshotHeight) throws IOException {
+        final ByteBuffer in = log.map(FileChannel.MapMode.READ_ONLY, 0, log.size());
+        int height = snapshotHeight;
+        recordsSinceSnapshot = 0;
+        while (in.remaining() >= 8) {
+            final int start = in.position();
+            final int length = in.getInt();
+            final int checksum = in.getInt();
+            if (length < 0 || length > in.remaining()) {
+                truncateTornRecord(start);
+                break;
+            }
+            final ByteBuffer payload = in.slice(in.position(), length);
+            final CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                truncateTornRecord(start);
+                break;
+            }
+            in.position(in.position() + length);
+
+            if (payload.getInt() != generation) {
+                continue; // written before the snapshot
+            }
+            recordsSinceSnapshot++;
+            final int recordHeight = payload.getInt();
+            if (payload.get() != 0) {
+                utxos.clear();
+            }
+            final int count = payload.getInt();
+            for (int i = 0; i < count; i++) {
+                final Hash id = BlockCodec.readHash(payload);
+                if (payload.get() != 0) {
+                    utxos.put(id, BlockCodec.readOutput(payload));
+                } else {
+                    utxos.remove(id);
+                }
+            }
+            height = recordHeight;
+        }
+        return height;
+    }
+
+    private void truncateTornRecord(final int position) throws IOException {
+        logger.warn("Discarding torn UTXO journal record at offset {}", position);
+        log.truncate(position);
+        log.force(true);
+    }
+}
@@ -5,7 +5,14 @@ public final class Constants {
     public static final int AVAILABLE_PROCESSORS = Runtime.getRuntime().availableProcessors();
     public static final int NUM_OF_BLOCKS = 10;
     public static final int NUM_OF_TRANSACTIONS = 20;
+    public static final int TRANSACTIONS_PER_BLOCK = 100;
     public static final float INITIAL_AMOUNT_OF_COINS = 100f;
+    // binary chain export, see Blockchain#exportTo
+    public static final String EXPORT_FILE = System.getProperty("noobchain.exportFile", "noobchain.dat");
+    // directory of the persistent block store, blocks stay in memory when not set
+    public static final String DATA_DIR = System.getProperty("noobchain.dataDir");
+    // blocks with their transactions kept on the heap by a persistent chain, only headers are kept for the rest
+    public static final int BLOCK_CACHE_SIZE = Integer.getInteger("noobchain.blockCache", 1024);
 
     private Constants() {
     }
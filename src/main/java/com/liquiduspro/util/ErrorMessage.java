@@ -10,6 +10,8 @@ public final class ErrorMessage {
     public static final String NO_ENOUGH_FUNDS = "Not enough funds to send transaction";
     public static final String INVALID_TRANSACTION_VALUE = "Invalid transaction value";
     public static final String UTXO_NOT_FOUND = "UTXO not found";
+    public static final String DOUBLE_SPEND = "Output is already spent by a pending transaction";
+    public static final String UTXO_SET_CONTENDED = "UTXOSet kept changing while executing the block";
 
     private ErrorMessage() {
 
@@ -0,0 +1,148 @@
+package com.liquiduspro.util;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * Immutable 256-bit hash used for every identifier of the chain: block hashes, transaction ids and output ids.
+ * <br>
+ * The 32 bytes are held in four big-endian {@code long} fields, so an instance takes 48 bytes of heap
+ * instead of the ~150 of a 64-character hex {@link String}, and {@link #equals(Object)} compares four words.
+ * {@link #toString()} is the lowercase hex form, which is still what gets hashed in block and output headers.
+ *
+ * @author econlq
+ */
+public final class Hash implements Comparable<Hash>, Serializable {
+    public static final int LENGTH = 32;
+    @Serial
+    private static final long serialVersionUID = 1L;
+    // previous hash of the genesis block and id of the genesis input
+    public static final Hash ZERO = new Hash(0L, 0L, 0L, 0L);
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private final long w0;
+    private final long w1;
+    private final long w2;
+    private final long w3;
+
+    private Hash(long w0, long w1, long w2, long w3) {
+        this.w0 = w0;
+        this.w1 = w1;
+        this.w2 = w2;
+        this.w3 = w3;
+    }
+
+    public static Hash of(final byte[] bytes) {
+        if (bytes.length != LENGTH) {
+            throw new IllegalArgumentException("Hash must have " + LENGTH + " bytes: " + bytes.length);
+        }
+        return read(ByteBuffer.wrap(bytes));
+    }
+
+    // reads 32 bytes at the buffer's position
+    public static Hash read(final ByteBuffer in) {
+        return new Hash(in.getLong(), in.getLong(), in.getLong(), in.getLong());
+    }
+
+    /**
+     * Parses up to 64 hex digits as a big-endian number, shorter values are padded with leading zeros,
+     * e.g. {@code "0"} is {@link #ZERO}.
+     */
+    public static Hash fromHex(final String hex) {
+        if (hex.isEmpty() || hex.length() > LENGTH * 2) {
+            throw new IllegalArgumentException("Not a hash: " + hex);
+        }
+        final long[] words = new long[4];
+        final int padding = LENGTH * 2 - hex.length();
+        for (int i = 0; i < hex.length(); i++) {
+            final int digit = Character.digit(hex.charAt(i), 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("Not a hash: " + hex);
+            }
+            final int position = padding + i;
+            words[position / 16] |= (long) digit << (60 - 4 * (position % 16));
+        }
+        return new Hash(words[0], words[1], words[2], words[3]);
+    }
+
+    public void write(final ByteBuffer out) {
+        out.putLong(w0).putLong(w1).putLong(w2).putLong(w3);
+    }
+
+    // one of the four big-endian 64-bit words, 0 is the most significant
+    public long word(final int index) {
+        switch (index) {
+            case 0:
+                return w0;
+            case 1:
+                return w1;
+            case 2:
+                return w2;
+            case 3:
+                return w3;
+            default:
+                throw new IndexOutOfBoundsException("Word " + index + " of 4");
+        }
+    }
+
+    public byte[] toBytes() {
+        final ByteBuffer out = ByteBuffer.allocate(LENGTH);
+        write(out);
+        return out.array();
+    }
+
+    // number of leading zero bits, 256 for ZERO
+    public int leadingZeroBits() {
+        if (w0 != 0) return Long.numberOfLeadingZeros(w0);
+        if (w1 != 0) return 64 + Long.numberOfLeadingZeros(w1);
+        if (w2 != 0) return 128 + Long.numberOfLeadingZeros(w2);
+        return 192 + Long.numberOfLeadingZeros(w3);
+    }
+
+    // true if the hex form starts with the given number of 0's
+    public boolean meetsDifficulty(final int difficulty) {
+        return leadingZeroBits() >= 4 * difficulty;
+    }
+
+    public String toHex() {
+        final char[] hex = new char[LENGTH * 2];
+        appendHex(hex, 0, w0);
+        appendHex(hex, 16, w1);
+        appendHex(hex, 32, w2);
+        appendHex(hex, 48, w3);
+        return new String(hex);
+    }
+
+    private static void appendHex(final char[] hex, final int offset, final long word) {
+        for (int i = 0; i < 16; i++) {
+            hex[offset + i] = HEX_DIGITS[(int) (word >>> (60 - 4 * i)) & 0x0f];
+        }
+    }
+
+    @Override
+    public int compareTo(final Hash other) {
+        int result = Long.compareUnsigned(w0, other.w0);
+        if (result == 0) result = Long.compareUnsigned(w1, other.w1);
+        if (result == 0) result = Long.compareUnsigned(w2, other.w2);
+        if (result == 0) result = Long.compareUnsigned(w3, other.w3);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Hash other)) return false;
+        return w0 == other.w0 && w1 == other.w1 && w2 == other.w2 && w3 == other.w3;
+    }
+
+    // the words are already uniformly distributed for real hashes
+    @Override
+    public int hashCode() {
+        return Long.hashCode(w0 ^ w1 ^ w2 ^ w3);
+    }
+
+    @Override
+    public String toString() {
+        return toHex();
+    }
+}
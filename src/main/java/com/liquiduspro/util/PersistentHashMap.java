@@ -0,0 +1,330 @@
+package com.liquiduspro.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable hash map with structural sharing, a hash array mapped trie of 32-way nodes.
+ * {@link #with(Object, Object)} and {@link #without(Object)} return a new map that copies only the nodes on the path
+ * to the changed key, a few small arrays, and shares everything else with the old map. Keeping a reference to an
+ * old map is therefore a cheap point-in-time snapshot, whatever its size.
+ * <br>
+ * Keys and values must not be {@code null}. The {@link Map} mutators throw {@link UnsupportedOperationException}.
+ *
+ * @author econlq
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(new Branch(0, new Object[0]), 0);
+    private final Node root;
+    private final int size;
+
+    private PersistentHashMap(final Node root, final int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    // spreads the high bits of the hash code into the low bits the trie indexes by first
+    private static int spread(final Object key) {
+        final int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(final Object key) {
+        return key == null ? null : (V) root.find(key, spread(key), 0);
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return a map with the given mapping added or replaced, this map if it already holds the same value
+     */
+    public PersistentHashMap<K, V> with(final K key, final V value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        final Change change = new Change();
+        final Node updated = root.with(key, value, spread(key), 0, change);
+        return updated == root ? this : new PersistentHashMap<>(updated, size + change.sizeDelta);
+    }
+
+    /**
+     * @return a map without the given key, this map if it does not contain the key
+     */
+    public PersistentHashMap<K, V> without(final Object key) {
+        if (key == null) return this;
+        final Change change = new Change();
+        final Node updated = root.without(key, spread(key), 0, change);
+        if (updated == root) return this;
+        return updated == null ? empty() : new PersistentHashMap<>(updated, size + change.sizeDelta);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(final BiConsumer<? super K, ? super V> action) {
+        root.forEach((BiConsumer<Object, Object>) action);
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new EntryIterator<>(root);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    // size difference caused by one update
+    private static final class Change {
+        int sizeDelta;
+    }
+
+    private interface Node {
+        Object find(Object key, int hash, int shift);
+
+        Node with(Object key, Object value, int hash, int shift, Change change);
+
+        // null if the node ends up empty
+        Node without(Object key, int hash, int shift, Change change);
+
+        void forEach(BiConsumer<Object, Object> action);
+
+        // pairs of key and value, a null key marks a child node in the value slot
+        Object[] slots();
+    }
+
+    // one slot pair per set bit of the bitmap, in bit order
+    private record Branch(int bitmap, Object[] slots) implements Node {
+
+        @Override
+        public Object find(final Object key, final int hash, final int shift) {
+            final int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) return null;
+            final int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+            final Object slotKey = slots[index];
+            if (slotKey == null) {
+                return ((Node) slots[index + 1]).find(key, hash, shift + BITS);
+            }
+            return key.equals(slotKey) ? slots[index + 1] : null;
+        }
+
+        @Override
+        public Node with(final Object key, final Object value, final int hash, final int shift, final Change change) {
+            final int bit = 1 << ((hash >>> shift) & MASK);
+            final int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) == 0) {
+                final Object[] inserted = new Object[slots.length + 2];
+                System.arraycopy(slots, 0, inserted, 0, index);
+                inserted[index] = key;
+                inserted[index + 1] = value;
+                System.arraycopy(slots, index, inserted, index + 2, slots.length - index);
+                change.sizeDelta = 1;
+                return new Branch(bitmap | bit, inserted);
+            }
+            final Object slotKey = slots[index];
+            final Object slotValue = slots[index + 1];
+            if (slotKey == null) {
+                final Node child = ((Node) slotValue).with(key, value, hash, shift + BITS, change);
+                return child == slotValue ? this : replace(index, null, child);
+            }
+            if (key.equals(slotKey)) {
+                return slotValue == value ? this : replace(index, slotKey, value);
+            }
+            change.sizeDelta = 1;
+            return replace(index, null, pair(slotKey, slotValue, spread(slotKey), key, value, hash, shift + BITS));
+        }
+
+        @Override
+        public Node without(final Object key, final int hash, final int shift, final Change change) {
+            final int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) return this;
+            final int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+            final Object slotKey = slots[index];
+            final Object slotValue = slots[index + 1];
+            if (slotKey == null) {
+                final Node child = ((Node) slotValue).without(key, hash, shift + BITS, change);
+                if (child == slotValue) return this;
+                if (child == null) return remove(bit, index);
+                // a child left with a single mapping is pulled up into this node
+                final Object[] childSlots = child.slots();
+                if (childSlots.length == 2 && childSlots[0] != null) {
+                    return replace(index, childSlots[0], childSlots[1]);
+                }
+                return replace(index, null, child);
+            }
+            if (!key.equals(slotKey)) return this;
+            change.sizeDelta = -1;
+            return remove(bit, index);
+        }
+
+        @Override
+        public void forEach(final BiConsumer<Object, Object> action) {
+            for (int i = 0; i < slots.length; i += 2) {
+                if (slots[i] == null) {
+                    ((Node) slots[i + 1]).forEach(action);
+                } else {
+                    action.accept(slots[i], slots[i + 1]);
+                }
+            }
+        }
+
+        private Branch replace(final int index, final Object key, final Object value) {
+            final Object[] replaced = slots.clone();
+            replaced[index] = key;
+            replaced[index + 1] = value;
+            return new Branch(bitmap, replaced);
+        }
+
+        private Branch remove(final int bit, final int index) {
+            if (slots.length == 2) return null;
+            final Object[] removed = new Object[slots.length - 2];
+            System.arraycopy(slots, 0, removed, 0, index);
+            System.arraycopy(slots, index + 2, removed, index, slots.length - index - 2);
+            return new Branch(bitmap & ~bit, removed);
+        }
+
+        // node holding two keys that collide on all levels above the given shift
+        private static Node pair(final Object key1, final Object value1, final int hash1,
+                                 final Object key2, final Object value2, final int hash2, final int shift) {
+            if (shift >= Integer.SIZE) {
+                return new Collision(hash1, new Object[]{key1, value1, key2, value2});
+            }
+            final int index1 = (hash1 >>> shift) & MASK;
+            final int index2 = (hash2 >>> shift) & MASK;
+            if (index1 == index2) {
+                return new Branch(1 << index1, new Object[]{null, pair(key1, value1, hash1, key2, value2, hash2, shift + BITS)});
+            }
+            return index1 < index2
+                    ? new Branch((1 << index1) | (1 << index2), new Object[]{key1, value1, key2, value2})
+                    : new Branch((1 << index1) | (1 << index2), new Object[]{key2, value2, key1, value1});
+        }
+    }
+
+    // keys whose spread hashes are equal, below the last level of branches
+    private record Collision(int hash, Object[] slots) implements Node {
+
+        @Override
+        public Object find(final Object key, final int hash, final int shift) {
+            final int index = indexOf(key);
+            return index < 0 ? null : slots[index + 1];
+        }
+
+        @Override
+        public Node with(final Object key, final Object value, final int hash, final int shift, final Change change) {
+            final int index = indexOf(key);
+            if (index >= 0) {
+                if (slots[index + 1] == value) return this;
+                final Object[] replaced = slots.clone();
+                replaced[index + 1] = value;
+                return new Collision(hash, replaced);
+            }
+            final Object[] inserted = new Object[slots.length + 2];
+            System.arraycopy(slots, 0, inserted, 0, slots.length);
+            inserted[slots.length] = key;
+            inserted[slots.length + 1] = value;
+            change.sizeDelta = 1;
+            return new Collision(hash, inserted);
+        }
+
+        @Override
+        public Node without(final Object key, final int hash, final int shift, final Change change) {
+            final int index = indexOf(key);
+            if (index < 0) return this;
+            change.sizeDelta = -1;
+            if (slots.length == 2) return null;
+            final Object[] removed = new Object[slots.length - 2];
+            System.arraycopy(slots, 0, removed, 0, index);
+            System.arraycopy(slots, index + 2, removed, index, slots.length - index - 2);
+            return new Collision(hash, removed);
+        }
+
+        @Override
+        public void forEach(final BiConsumer<Object, Object> action) {
+            for (int i = 0; i < slots.length; i += 2) {
+                action.accept(slots[i], slots[i + 1]);
+            }
+        }
+
+        private int indexOf(final Object key) {
+            for (int i = 0; i < slots.length; i += 2) {
+                if (key.equals(slots[i])) return i;
+            }
+            return -1;
+        }
+    }
+
+    // depth-first walk with one slot position per level
+    private static final class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+        private final Object[][] nodes = new Object[Integer.SIZE / BITS + 2][];
+        private final int[] positions = new int[nodes.length];
+        private int depth;
+        private Entry<K, V> next;
+
+        EntryIterator(final Node root) {
+            nodes[0] = root.slots();
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            final Entry<K, V> entry = next;
+            if (entry == null) throw new NoSuchElementException();
+            advance();
+            return entry;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            while (depth >= 0) {
+                final Object[] slots = nodes[depth];
+                final int position = positions[depth];
+                if (position == slots.length) {
+                    depth--;
+                    continue;
+                }
+                positions[depth] = position + 2;
+                if (slots[position] == null) {
+                    depth++;
+                    nodes[depth] = ((Node) slots[position + 1]).slots();
+                    positions[depth] = 0;
+                } else {
+                    next = new SimpleImmutableEntry<>((K) slots[position], (V) slots[position + 1]);
+                    return;
+                }
+            }
+            next = null;
+        }
+    }
+}
@@ -1,62 +1,78 @@
 package com.liquiduspro.util;
 
 
+import com.liquiduspro.domain.MerkleTree;
 import com.liquiduspro.domain.transaction.Transaction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.charset.StandardCharsets;
 import java.security.*;
-import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
-import java.util.stream.Collectors;
 
 
 public final class StringUtil {
     private static final Logger logger = LoggerFactory.getLogger(StringUtil.class);
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    // Signature instances are reusable after initSign/initVerify, one per thread avoids the provider lookup per call
+    private static final ThreadLocal<Signature> ECDSA = ThreadLocal.withInitial(() -> {
+        try {
+            return Signature.getInstance("ECDSA", "BC");
+        } catch (NoSuchAlgorithmException | NoSuchProviderException e) {
+            throw new RuntimeException(e);
+        }
+    });
 
     public static String applySha256(final String input) {
+        return toHexString(digestSha256(input));
+    }
+
+    // SHA-256 of the UTF-8 input as a binary hash
+    public static Hash sha256(final String input) {
+        return Hash.of(digestSha256(input));
+    }
+
+    private static byte[] digestSha256(final String input) {
         try {
             final MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-            final StringBuilder hexString = new StringBuilder(); // this will contain hash as a hexadecimal
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
-            return hexString.toString();
+            return digest.digest(input.getBytes(StandardCharsets.UTF_8));
         } catch (NoSuchAlgorithmException e) {
             logger.warn("Error while hashing string: {}", e.toString());
             throw new RuntimeException(e);
         }
     }
 
+    // lowercase hexadecimal form of the bytes
+    public static String toHexString(final byte[] bytes) {
+        final char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(bytes[i] >>> 4) & 0x0f];
+            hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0x0f];
+        }
+        return new String(hex);
+    }
+
     // apply ECDSA signature and return the result in bytes
     public static byte[] applyECDSASignature(final PrivateKey privateKey, final String input) {
-        Signature ecdsa;
-        byte[] output;
         try {
-            ecdsa = Signature.getInstance("ECDSA", "BC");
+            final Signature ecdsa = ECDSA.get();
             ecdsa.initSign(privateKey);
-            byte[] strByte = input.getBytes();
-            ecdsa.update(strByte);
-            output = ecdsa.sign();  // real signature
-        } catch (NoSuchAlgorithmException | SignatureException | NoSuchProviderException | InvalidKeyException e) {
+            ecdsa.update(input.getBytes());
+            return ecdsa.sign();  // real signature
+        } catch (SignatureException | InvalidKeyException e) {
             throw new RuntimeException(e);
         }
-        return output;
     }
 
     // verify ECDSA signature
     public static boolean verifyECDSASignature(final PublicKey publicKey, final String data, final byte[] signature) {
         try {
-            Signature ecdsaVerify = Signature.getInstance("ECDSA", "BC");
+            final Signature ecdsaVerify = ECDSA.get();
             ecdsaVerify.initVerify(publicKey);
             ecdsaVerify.update(data.getBytes());
             return ecdsaVerify.verify(signature);
-        } catch (NoSuchAlgorithmException | NoSuchProviderException | InvalidKeyException | SignatureException e) {
+        } catch (InvalidKeyException | SignatureException e) {
             throw new RuntimeException(e);
         }
     }
@@ -65,28 +81,11 @@ public final class StringUtil {
         return Base64.getEncoder().encodeToString(key.getEncoded());
     }
 
-    public static String getMerkleRoot(final List<Transaction> transactions) {
-        int count = transactions.size();
-        List<String> previousTreeLayer = transactions
-                .stream()
-                .map(Transaction::getTransactionId)
-                .collect(Collectors.toList());
-
-        List<String> treeLayer = new ArrayList<>();
-        while (count > 1) {
-            if (count % 2 != 0) {
-                treeLayer.add(previousTreeLayer.get(count - 1));
-                count--;
-            }
-            for (int i = 0; i < count; i += 2) {
-                String parent = applySha256(previousTreeLayer.get(i) + previousTreeLayer.get(i + 1));
-                treeLayer.add(parent);
-            }
-            previousTreeLayer = treeLayer;
-            treeLayer = new ArrayList<>();
-            count = previousTreeLayer.size();
-        }
-        String merkleRoot = (treeLayer.size() == 1) ? treeLayer.get(0) : "";
-        return merkleRoot;
+    /**
+     * Merkle root of the transaction ids, {@link Hash#ZERO} for no transactions.
+     * See {@link MerkleTree} for the tree layout.
+     */
+    public static Hash getMerkleRoot(final List<Transaction> transactions) {
+        return MerkleTree.build(transactions).getRoot();
     }
 }
@@ -0,0 +1,100 @@
+package com.liquiduspro.network;
+
+import com.liquiduspro.domain.Block;
+import com.liquiduspro.domain.Wallet;
+import com.liquiduspro.domain.transaction.Transaction;
+import com.liquiduspro.util.Hash;
+import com.liquiduspro.util.StringUtil;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.Security;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs three {@link PeerNode peer nodes} over loopback, connected as {@code A <- B <- C}, each with its own
+ * {@link MemoryNodeStore}: B and C sync the chain of A on connect, then blocks announced and a transaction broadcast
+ * by A have to be relayed through B to C.
+ *
+ * @author econlq
+ */
+class PeerNodeLoopbackTest {
+    private static final int BLOCKS = 50;
+    private static final long TIMEOUT_MILLIS = 10_000;
+    // cheap proof-of-work, the memory stores only check hashes and parents
+    private static final int DIFFICULTY = 1;
+
+    @BeforeAll
+    static void addProvider() {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    @Test
+    void syncsAndRelaysThroughMiddleNode() throws IOException, InterruptedException {
+        final InetSocketAddress loopback = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        final MemoryNodeStore storeA = new MemoryNodeStore();
+        final MemoryNodeStore storeB = new MemoryNodeStore();
+        final MemoryNodeStore storeC = new MemoryNodeStore();
+        Hash tip = Hash.ZERO;
+        for (int i = 0; i < BLOCKS; i++) {
+            tip = mine(storeA, tip).getHash();
+        }
+        try (PeerNode nodeA = new PeerNode(storeA, loopback);
+             PeerNode nodeB = new PeerNode(storeB, loopback);
+             PeerNode nodeC = new PeerNode(storeC, loopback)) {
+            nodeB.connect(nodeA.getLocalAddress());
+            nodeC.connect(nodeB.getLocalAddress());
+            final Hash syncedTip = tip;
+            assertTrue(await(() -> storeB.getBlockCount() == BLOCKS && storeC.getBlockCount() == BLOCKS),
+                    "B and C sync the chain of A");
+            assertEquals(syncedTip, storeC.getTip());
+
+            for (int i = 0; i < BLOCKS; i++) {
+                tip = mine(storeA, tip).getHash();
+                nodeA.announceBlock(tip);
+            }
+            final Hash announcedTip = tip;
+            assertTrue(await(() -> announcedTip.equals(storeC.getTip()) && storeC.getBlockCount() == 2 * BLOCKS),
+                    "C receives the blocks announced by A through B");
+
+            nodeA.broadcastTransaction(signedTransaction());
+            assertTrue(await(() -> storeC.getTransactionCount() == 1), "C receives the transaction of A through B");
+            assertEquals(1, storeB.getTransactionCount());
+        }
+    }
+
+    private static Block mine(final MemoryNodeStore store, final Hash previousHash) {
+        final Block block = new Block(previousHash);
+        block.mineBlock(DIFFICULTY);
+        assertTrue(store.addBlock(block), "block is added to the store");
+        return block;
+    }
+
+    private static Transaction signedTransaction() {
+        final Wallet sender = new Wallet();
+        final Wallet recipient = new Wallet();
+        final Transaction transaction = new Transaction(sender.getPublicKey(), recipient.getPublicKey(), 1f, List.of());
+        transaction.generateSignature(sender.getPrivateKey());
+        transaction.setTransactionId(StringUtil.sha256("loopback" + System.nanoTime()));
+        return transaction;
+    }
+
+    private static boolean await(final BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+}